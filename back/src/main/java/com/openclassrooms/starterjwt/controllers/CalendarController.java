@@ -0,0 +1,53 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.services.CalendarFeedService;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Calendar feeds for calendar apps, which subscribe by URL: the secret token in the URL stands for the user, so
+ * these requests carry no bearer token. See {@link UserController} to issue or revoke a token.
+ */
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/calendar")
+public class CalendarController {
+    static final MediaType TEXT_CALENDAR = new MediaType("text", "calendar", StandardCharsets.UTF_8);
+
+    private final CalendarFeedService calendarFeedService;
+
+    public CalendarController(CalendarFeedService calendarFeedService) {
+        this.calendarFeedService = calendarFeedService;
+    }
+
+    @GetMapping("/{token}.ics")
+    public ResponseEntity<?> feed(@PathVariable("token") String token, WebRequest request) {
+        CalendarFeedService.Feed feed = this.calendarFeedService.getFeedByToken(token);
+
+        if (feed == null) {
+            throw new NotFoundException();
+        }
+
+        return respond(feed, request);
+    }
+
+    /**
+     * The feed, or a 304 when the client's ETag or Last-Modified still matches.
+     */
+    static ResponseEntity<?> respond(CalendarFeedService.Feed feed, WebRequest request) {
+        if (request.checkNotModified(feed.getEtag(), feed.getLastModified())) {
+            return null;
+        }
+
+        return ResponseEntity.ok()
+                .contentType(TEXT_CALENDAR)
+                .eTag(feed.getEtag())
+                .lastModified(feed.getLastModified())
+                .body(feed.getBody());
+    }
+}
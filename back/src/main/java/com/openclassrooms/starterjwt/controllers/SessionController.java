@@ -1,16 +1,44 @@
 package com.openclassrooms.starterjwt.controllers;
 
 
+import com.openclassrooms.starterjwt.dto.SessionCursor;
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionPageDto;
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.exception.UnauthorizedException;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.payload.request.BulkParticipationRequest;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.SessionEventBroadcaster;
+import com.openclassrooms.starterjwt.services.SessionExportService;
+import com.openclassrooms.starterjwt.services.SessionResponseCache;
 import com.openclassrooms.starterjwt.services.SessionService;
+import com.openclassrooms.starterjwt.services.SessionVersions;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
-
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -19,34 +47,150 @@ import java.util.List;
 public class SessionController {
     private final SessionMapper sessionMapper;
     private final SessionService sessionService;
+    private final SessionVersions sessionVersions;
+    private final SessionResponseCache sessionResponseCache;
+    private final SessionExportService sessionExportService;
+    private final SessionEventBroadcaster sessionEventBroadcaster;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final long exportTimeoutMs;
 
 
     public SessionController(SessionService sessionService,
-                             SessionMapper sessionMapper) {
+                             SessionMapper sessionMapper,
+                             SessionVersions sessionVersions,
+                             SessionResponseCache sessionResponseCache,
+                             SessionExportService sessionExportService,
+                             SessionEventBroadcaster sessionEventBroadcaster,
+                             @Value("${oc.app.sessionPage.defaultSize:20}") int defaultPageSize,
+                             @Value("${oc.app.sessionPage.maxSize:100}") int maxPageSize,
+                             @Value("${oc.app.export.timeoutMs:600000}") long exportTimeoutMs) {
         this.sessionMapper = sessionMapper;
         this.sessionService = sessionService;
+        this.sessionVersions = sessionVersions;
+        this.sessionResponseCache = sessionResponseCache;
+        this.sessionExportService = sessionExportService;
+        this.sessionEventBroadcaster = sessionEventBroadcaster;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.exportTimeoutMs = exportTimeoutMs;
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> findById(@PathVariable("id") String id) {
-        try {
-            Session session = this.sessionService.getById(Long.valueOf(id));
+    public ResponseEntity<?> findById(@PathVariable("id") String id, WebRequest request) {
+        Long sessionId = Long.valueOf(id);
+        String etag = this.sessionVersions.version(sessionId);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
 
-            if (session == null) {
-                return ResponseEntity.notFound().build();
-            }
+        byte[] session = this.sessionResponseCache.getDetail(sessionId, () -> {
+            Session detail = this.sessionService.getDetailById(sessionId);
+            return detail != null ? this.sessionMapper.toDto(detail) : null;
+        });
 
-            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
+        if (session == null) {
+            throw new NotFoundException();
         }
+
+        return ResponseEntity.ok().eTag(etag).contentType(MediaType.APPLICATION_JSON).body(session);
     }
 
+    /**
+     * Without paging parameters the whole list is returned as before, as summaries. With {@code limit}, {@code cursor} or
+     * {@code from}, sessions are paged in (date, id) order, starting from now unless told otherwise.
+     * Responses that do not depend on the current time carry an ETag and are answered with 304 before any query runs.
+     */
     @GetMapping()
-    public ResponseEntity<?> findAll() {
-        List<Session> sessions = this.sessionService.findAll();
+    public ResponseEntity<?> findAll(@RequestParam(value = "limit", required = false) Integer limit,
+                                     @RequestParam(value = "cursor", required = false) String cursor,
+                                     @RequestParam(value = "from", required = false)
+                                     @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+                                     WebRequest request) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (limit == null || cursor != null || from != null) {
+            String etag = this.sessionVersions.listVersion();
+            if (request.checkNotModified(etag)) {
+                return null;
+            }
+            response.eTag(etag);
+        }
+
+        if (limit == null && cursor == null && from == null) {
+            return response.contentType(MediaType.APPLICATION_JSON)
+                    .body(this.sessionResponseCache.getList(this.sessionService::findAllSummaries));
+        }
+
+        int size = Math.max(1, Math.min(limit != null ? limit : defaultPageSize, maxPageSize));
+        SessionCursor after = cursor != null
+                ? SessionCursor.decode(cursor)
+                : new SessionCursor(from != null ? from : new Date(), 0L);
 
-        return ResponseEntity.ok().body(this.sessionMapper.toDto(sessions));
+        List<SessionSummaryDto> sessions = this.sessionService.findPage(after, size + 1);
+        return response.body(SessionPageDto.of(sessions, size));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<?> search(@RequestParam(value = "from", required = false)
+                                    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+                                    @RequestParam(value = "to", required = false)
+                                    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to,
+                                    @RequestParam(value = "teacherId", required = false) String teacherId,
+                                    @RequestParam(value = "q", required = false) String text,
+                                    @RequestParam(value = "limit", required = false) Integer limit,
+                                    @RequestParam(value = "cursor", required = false) String cursor) {
+        int size = Math.max(1, Math.min(limit != null ? limit : defaultPageSize, maxPageSize));
+        SessionCursor after = cursor != null ? SessionCursor.decode(cursor) : null;
+
+        List<SessionSummaryDto> sessions = this.sessionService.search(from, to,
+                teacherId != null ? Long.valueOf(teacherId) : null, text, after, size + 1);
+        return ResponseEntity.ok().body(SessionPageDto.of(sessions, size));
+    }
+
+    /**
+     * Server-Sent Events stream of session changes ({@code created}, {@code updated}, {@code deleted},
+     * {@code participants}), each carrying the session id, with a comment line as heartbeat.
+     */
+    @GetMapping("/events")
+    public ResponseEntity<ResponseBodyEmitter> events() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .header("X-Accel-Buffering", "no")
+                .body(this.sessionEventBroadcaster.subscribe());
+    }
+
+    /**
+     * Streams every session with its participant ids, as NDJSON or CSV, for reporting. Admins only.
+     * The export gets its own async timeout, longer than the container's default, instead of raising it for every
+     * request.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                                                        HttpServletRequest request, HttpServletResponse response) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (!(authentication.getPrincipal() instanceof UserDetailsImpl)
+                || !Boolean.TRUE.equals(((UserDetailsImpl) authentication.getPrincipal()).getAdmin())) {
+            throw new UnauthorizedException("Error: Admin only!");
+        }
+
+        SessionExportService.Format exportFormat;
+        try {
+            exportFormat = SessionExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Error: Unknown export format!");
+        }
+
+        MediaType contentType = exportFormat == SessionExportService.Format.CSV
+                ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : new MediaType("application", "x-ndjson");
+        AsyncWebRequest asyncWebRequest = WebAsyncUtils.createAsyncWebRequest(request, response);
+        asyncWebRequest.setTimeout(this.exportTimeoutMs);
+        WebAsyncUtils.getAsyncManager(request).setAsyncWebRequest(asyncWebRequest);
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"sessions." + format.toLowerCase(Locale.ROOT) + "\"")
+                .body(out -> this.sessionExportService.export(exportFormat, out));
     }
 
     @PostMapping()
@@ -61,50 +205,43 @@ public class SessionController {
 
     @PutMapping("{id}")
     public ResponseEntity<?> update(@PathVariable("id") String id, @Valid @RequestBody SessionDto sessionDto) {
-        try {
-            Session session = this.sessionService.update(Long.parseLong(id), this.sessionMapper.toEntity(sessionDto));
+        Session session = this.sessionService.update(Long.parseLong(id), this.sessionMapper.toEntity(sessionDto));
 
-            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
-        }
+        return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
     }
 
     @DeleteMapping("{id}")
     public ResponseEntity<?> save(@PathVariable("id") String id) {
-        try {
-            Session session = this.sessionService.getById(Long.valueOf(id));
-
-            if (session == null) {
-                return ResponseEntity.notFound().build();
-            }
-
-            this.sessionService.delete(Long.parseLong(id));
-            return ResponseEntity.ok().build();
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
-        }
+        this.sessionService.delete(Long.parseLong(id));
+        return ResponseEntity.ok().build();
     }
 
     @PostMapping("{id}/participate/{userId}")
     public ResponseEntity<?> participate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
-        try {
-            this.sessionService.participate(Long.parseLong(id), Long.parseLong(userId));
+        this.sessionService.participate(Long.parseLong(id), Long.parseLong(userId));
 
-            return ResponseEntity.ok().build();
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
-        }
+        return ResponseEntity.ok().build();
     }
 
     @DeleteMapping("{id}/participate/{userId}")
     public ResponseEntity<?> noLongerParticipate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
-        try {
-            this.sessionService.noLongerParticipate(Long.parseLong(id), Long.parseLong(userId));
+        this.sessionService.noLongerParticipate(Long.parseLong(id), Long.parseLong(userId));
 
-            return ResponseEntity.ok().build();
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
-        }
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping("{id}/participate")
+    public ResponseEntity<?> participateAll(@PathVariable("id") String id, @Valid @RequestBody BulkParticipationRequest request) {
+        return ResponseEntity.ok().body(this.sessionService.participateAll(Long.parseLong(id), request.getIds()));
+    }
+
+    @DeleteMapping("{id}/participate")
+    public ResponseEntity<?> noLongerParticipateAll(@PathVariable("id") String id, @Valid @RequestBody BulkParticipationRequest request) {
+        return ResponseEntity.ok().body(this.sessionService.noLongerParticipateAll(Long.parseLong(id), request.getIds()));
+    }
+
+    @PostMapping("participate/{userId}")
+    public ResponseEntity<?> participateInAll(@PathVariable("userId") String userId, @Valid @RequestBody BulkParticipationRequest request) {
+        return ResponseEntity.ok().body(this.sessionService.participateInAll(Long.parseLong(userId), request.getIds()));
     }
 }
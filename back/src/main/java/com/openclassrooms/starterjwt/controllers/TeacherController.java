@@ -1,10 +1,13 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.mapper.TeacherMapper;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.services.TeacherService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
 import java.util.List;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -22,24 +25,35 @@ public class TeacherController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> findById(@PathVariable("id") String id) {
-        try {
-            Teacher teacher = this.teacherService.findById(Long.valueOf(id));
-
-            if (teacher == null) {
-                return ResponseEntity.notFound().build();
+    public ResponseEntity<?> findById(@PathVariable("id") String id, WebRequest request) {
+        Long teacherId = Long.valueOf(id);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        String etag = this.teacherService.version(teacherId);
+        if (etag != null) {
+            if (request.checkNotModified(etag)) {
+                return null;
             }
+            response.eTag(etag);
+        }
+
+        Teacher teacher = this.teacherService.findById(teacherId);
 
-            return ResponseEntity.ok().body(this.teacherMapper.toDto(teacher));
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
+        if (teacher == null) {
+            throw new NotFoundException();
         }
+
+        return response.body(this.teacherMapper.toDto(teacher));
     }
 
     @GetMapping()
-    public ResponseEntity<?> findAll() {
+    public ResponseEntity<?> findAll(WebRequest request) {
+        String etag = this.teacherService.listVersion();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+
         List<Teacher> teachers = this.teacherService.findAll();
 
-        return ResponseEntity.ok().body(this.teacherMapper.toDto(teachers));
+        return ResponseEntity.ok().eTag(etag).body(this.teacherMapper.toDto(teachers));
     }
 }
@@ -1,14 +1,26 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import com.openclassrooms.starterjwt.dto.SessionCursor;
+import com.openclassrooms.starterjwt.dto.SessionPageDto;
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.exception.UnauthorizedException;
 import com.openclassrooms.starterjwt.mapper.UserMapper;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.response.CalendarFeedResponse;
+import com.openclassrooms.starterjwt.services.CalendarFeedService;
+import com.openclassrooms.starterjwt.services.SessionService;
 import com.openclassrooms.starterjwt.services.UserService;
-import org.springframework.http.HttpStatus;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.util.Date;
+import java.util.List;
 import java.util.Objects;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -17,48 +29,137 @@ import java.util.Objects;
 public class UserController {
     private final UserMapper userMapper;
     private final UserService userService;
+    private final CalendarFeedService calendarFeedService;
+    private final SessionService sessionService;
+    private final int defaultPageSize;
+    private final int maxPageSize;
 
 
     public UserController(UserService userService,
-                             UserMapper userMapper) {
+                             UserMapper userMapper,
+                             CalendarFeedService calendarFeedService,
+                             SessionService sessionService,
+                             @Value("${oc.app.sessionPage.defaultSize:20}") int defaultPageSize,
+                             @Value("${oc.app.sessionPage.maxSize:100}") int maxPageSize) {
         this.userMapper = userMapper;
         this.userService = userService;
+        this.calendarFeedService = calendarFeedService;
+        this.sessionService = sessionService;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<?> findById(@PathVariable("id") String id) {
-        try {
-            User user = this.userService.findById(Long.valueOf(id));
+        User user = this.userService.findById(Long.valueOf(id));
 
-            if (user == null) {
-                return ResponseEntity.notFound().build();
-            }
+        if (user == null) {
+            throw new NotFoundException();
+        }
+
+        return ResponseEntity.ok().body(this.userMapper.toDto(user));
+    }
+
+    /**
+     * The sessions the user booked, as pages of summaries: upcoming ones soonest first, or with {@code past=true}
+     * past ones latest first. Only the user's participations are read, however large the catalogue.
+     */
+    @GetMapping("/{id}/sessions")
+    public ResponseEntity<?> findSessions(@PathVariable("id") String id,
+                                          @RequestParam(value = "past", defaultValue = "false") boolean past,
+                                          @RequestParam(value = "limit", required = false) Integer limit,
+                                          @RequestParam(value = "cursor", required = false) String cursor) {
+        User user = this.userService.findById(Long.valueOf(id));
+
+        if (user == null) {
+            throw new NotFoundException();
+        }
+
+        checkOwner(user.getEmail());
+
+        int size = Math.max(1, Math.min(limit != null ? limit : defaultPageSize, maxPageSize));
+        SessionCursor after = cursor != null ? SessionCursor.decode(cursor) : new SessionCursor(new Date(), 0L);
+
+        List<SessionSummaryDto> sessions = this.sessionService.findUserSessions(user.getId(), past, after, size + 1);
+        return ResponseEntity.ok().body(SessionPageDto.of(sessions, size));
+    }
+
+    /**
+     * The user's booked sessions as an iCalendar feed. Calendar apps poll it, so it is answered from a cached
+     * rendering and a client sending back the feed's ETag or Last-Modified gets a 304 while nothing changed.
+     * This one needs the user's bearer token; calendar apps use the URL from {@code calendar-token} instead.
+     */
+    @GetMapping("/{id}/calendar.ics")
+    public ResponseEntity<?> calendar(@PathVariable("id") String id, WebRequest request) {
+        User user = this.userService.findById(Long.valueOf(id));
+
+        if (user == null) {
+            throw new NotFoundException();
+        }
+
+        checkOwner(user.getEmail());
 
-            return ResponseEntity.ok().body(this.userMapper.toDto(user));
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
+        return CalendarController.respond(this.calendarFeedService.getFeed(user.getId()), request);
+    }
+
+    /**
+     * Issues the user a secret calendar feed URL for calendar apps to subscribe to, which sends no bearer token.
+     * Any URL issued before stops working.
+     */
+    @PostMapping("/{id}/calendar-token")
+    public ResponseEntity<?> issueCalendarToken(@PathVariable("id") String id) {
+        String email = this.userService.findEmailById(Long.valueOf(id));
+
+        if (email == null) {
+            throw new NotFoundException();
+        }
+
+        checkOwner(email);
+
+        String token = this.calendarFeedService.issueToken(Long.valueOf(id));
+        String url = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/calendar/{token}.ics")
+                .buildAndExpand(token)
+                .toUriString();
+        return ResponseEntity.ok().body(new CalendarFeedResponse(url));
+    }
+
+    @DeleteMapping("/{id}/calendar-token")
+    public ResponseEntity<?> revokeCalendarToken(@PathVariable("id") String id) {
+        String email = this.userService.findEmailById(Long.valueOf(id));
+
+        if (email == null) {
+            throw new NotFoundException();
         }
+
+        checkOwner(email);
+
+        this.calendarFeedService.revokeToken(Long.valueOf(id));
+        return ResponseEntity.ok().build();
     }
 
+    /**
+     * Only the user's email is read, for the owner check; the deletion itself loads nothing.
+     */
     @DeleteMapping("{id}")
     public ResponseEntity<?> save(@PathVariable("id") String id) {
-        try {
-            User user = this.userService.findById(Long.valueOf(id));
+        String email = this.userService.findEmailById(Long.valueOf(id));
 
-            if (user == null) {
-                return ResponseEntity.notFound().build();
-            }
+        if (email == null) {
+            throw new NotFoundException();
+        }
+
+        checkOwner(email);
 
-            UserDetails userDetails = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        this.userService.delete(Long.parseLong(id));
+        return ResponseEntity.ok().build();
+    }
 
-            if(!Objects.equals(userDetails.getUsername(), user.getEmail())) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-            }
+    private static void checkOwner(String email) {
+        UserDetails userDetails = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
 
-            this.userService.delete(Long.parseLong(id));
-            return ResponseEntity.ok().build();
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
+        if(!Objects.equals(userDetails.getUsername(), email)) {
+            throw new UnauthorizedException();
         }
     }
 }
@@ -0,0 +1,27 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one item of a bulk enrollment: {@code id} is the user or the session, depending on the call.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ParticipationResultDto {
+    private Long id;
+
+    private Status status;
+
+    public enum Status {
+        ENROLLED,
+        ALREADY_ENROLLED,
+        REMOVED,
+        NOT_ENROLLED,
+        FULL,
+        OVERLAPPING,
+        NOT_FOUND
+    }
+}
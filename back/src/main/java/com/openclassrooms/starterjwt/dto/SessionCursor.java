@@ -0,0 +1,39 @@
+package com.openclassrooms.starterjwt.dto;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Opaque keyset position in the (date, id) order of sessions.
+ */
+@Getter
+public class SessionCursor {
+    private final Date date;
+
+    private final Long id;
+
+    public SessionCursor(Date date, Long id) {
+        this.date = date;
+        this.id = id;
+    }
+
+    public String encode() {
+        String key = date.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static SessionCursor decode(String cursor) {
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            int separator = key.indexOf(':');
+            return new SessionCursor(new Date(Long.parseLong(key.substring(0, separator))),
+                    Long.parseLong(key.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new BadRequestException("Error: Invalid cursor!");
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package com.openclassrooms.starterjwt.dto;
 
+import com.openclassrooms.starterjwt.models.Session;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
@@ -24,6 +27,10 @@ public class SessionDto {
     @NotNull
     private Date date;
 
+    @Min(1)
+    @Max(Session.MAX_DURATION_MINUTES)
+    private Integer duration;
+
     @NotNull
     private Long teacher_id;
 
@@ -36,4 +43,7 @@ public class SessionDto {
     private LocalDateTime createdAt;
 
     private LocalDateTime updatedAt;
+
+    @Min(1)
+    private Integer capacity;
 }
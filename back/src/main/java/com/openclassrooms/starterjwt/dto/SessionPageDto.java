@@ -0,0 +1,29 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionPageDto {
+    private List<SessionSummaryDto> items;
+
+    private String next;
+
+    /**
+     * Trims a result fetched with one extra row and, if that row exists, points the next cursor at the last kept one.
+     */
+    public static SessionPageDto of(List<SessionSummaryDto> sessions, int size) {
+        if (sessions.size() <= size) {
+            return new SessionPageDto(sessions, null);
+        }
+
+        List<SessionSummaryDto> items = sessions.subList(0, size);
+        SessionSummaryDto last = items.get(size - 1);
+        return new SessionPageDto(items, new SessionCursor(last.getDate(), last.getId()).encode());
+    }
+}
@@ -0,0 +1,48 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+
+/**
+ * List view of a session: the participants are only counted. Built directly by a JPQL constructor expression.
+ */
+@Data
+@NoArgsConstructor
+public class SessionSummaryDto {
+    private Long id;
+
+    private String name;
+
+    private Date date;
+
+    private Integer duration;
+
+    private Long teacher_id;
+
+    private String description;
+
+    private long participants;
+
+    private Integer capacity;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+
+    public SessionSummaryDto(Long id, String name, Date date, Integer duration, Long teacher_id, String description,
+                             Number participants, Integer capacity, LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this.id = id;
+        this.name = name;
+        this.date = date;
+        this.duration = duration;
+        this.teacher_id = teacher_id;
+        this.description = description;
+        this.participants = participants != null ? participants.longValue() : 0;
+        this.capacity = capacity;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,78 @@
+package com.openclassrooms.starterjwt.exception;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.openclassrooms.starterjwt.payload.response.ErrorResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
+
+/**
+ * Turns every error raised by a controller into the same {@link ErrorResponse} body, serialized by the
+ * Spring-managed message converters. Unauthenticated requests are answered by
+ * {@link com.openclassrooms.starterjwt.security.jwt.AuthEntryPointJwt} with the same shape.
+ */
+@RestControllerAdvice
+public class RestExceptionHandler extends ResponseEntityExceptionHandler {
+
+    @ExceptionHandler(NotFoundException.class)
+    public ResponseEntity<Object> handleNotFound(NotFoundException e, HttpServletRequest request) {
+        return error(HttpStatus.NOT_FOUND, e.getMessage(), request);
+    }
+
+    @ExceptionHandler({BadRequestException.class, NumberFormatException.class})
+    public ResponseEntity<Object> handleBadRequest(RuntimeException e, HttpServletRequest request) {
+        String message = e instanceof BadRequestException ? e.getMessage() : null;
+        return error(HttpStatus.BAD_REQUEST, message, request);
+    }
+
+    @ExceptionHandler(UnauthorizedException.class)
+    public ResponseEntity<Object> handleUnauthorized(UnauthorizedException e, HttpServletRequest request) {
+        return error(HttpStatus.UNAUTHORIZED, e.getMessage(), request);
+    }
+
+    @ExceptionHandler(AuthenticationException.class)
+    public ResponseEntity<Object> handleAuthentication(AuthenticationException e, HttpServletRequest request) {
+        return error(HttpStatus.UNAUTHORIZED, e.getMessage(), request);
+    }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<Object> handleTooManyRequests(TooManyRequestsException e, HttpServletRequest request) {
+        return ResponseEntity
+                .status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(new ErrorResponse(HttpStatus.TOO_MANY_REQUESTS, e.getMessage(), request.getServletPath()));
+    }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<Object> handleServiceUnavailable(ServiceUnavailableException e, HttpServletRequest request) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(new ErrorResponse(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage(), request.getServletPath()));
+    }
+
+    @Override
+    protected ResponseEntity<Object> handleExceptionInternal(Exception e, Object body, HttpHeaders headers,
+                                                             HttpStatus status, WebRequest request) {
+        String path = request instanceof ServletWebRequest
+                ? ((ServletWebRequest) request).getRequest().getServletPath()
+                : null;
+        return ResponseEntity
+                .status(status)
+                .headers(headers)
+                .body(new ErrorResponse(status, null, path));
+    }
+
+    private static ResponseEntity<Object> error(HttpStatus status, String message, HttpServletRequest request) {
+        return ResponseEntity
+                .status(status)
+                .body(new ErrorResponse(status, message, request.getServletPath()));
+    }
+}
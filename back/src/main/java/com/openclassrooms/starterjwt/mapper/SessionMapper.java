@@ -1,7 +1,9 @@
 package com.openclassrooms.starterjwt.mapper;
 
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.services.TeacherService;
 import com.openclassrooms.starterjwt.services.UserService;
@@ -11,13 +13,19 @@ import org.mapstruct.Mappings;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Component
-@Mapper(componentModel = "spring", uses = {UserService.class}, imports = {Arrays.class, Collectors.class, Session.class, User.class, Collections.class, Optional.class})
+@Mapper(componentModel = "spring", uses = {UserService.class}, imports = {Collectors.class, Collections.class, Optional.class})
 public abstract class SessionMapper implements EntityMapper<SessionDto, Session> {
 
     @Autowired
@@ -27,16 +35,72 @@ public abstract class SessionMapper implements EntityMapper<SessionDto, Session>
 
     @Mappings({
             @Mapping(source = "description", target = "description"),
-            @Mapping(target = "teacher", expression = "java(sessionDto.getTeacher_id() != null ? this.teacherService.findById(sessionDto.getTeacher_id()) : null)"),
-            @Mapping(target = "users", expression = "java(Optional.ofNullable(sessionDto.getUsers()).orElseGet(Collections::emptyList).stream().map(user_id -> { User user = this.userService.findById(user_id); if (user != null) { return user; } return null; }).collect(Collectors.toList()))"),
+            @Mapping(target = "participantCount", ignore = true),
+            @Mapping(target = "teacher", ignore = true),
+            @Mapping(target = "users", ignore = true),
     })
-    public abstract Session toEntity(SessionDto sessionDto);
+    protected abstract Session toEntityWithoutReferences(SessionDto sessionDto);
 
+    @Override
+    public Session toEntity(SessionDto sessionDto) {
+        return sessionDto != null ? toEntity(Collections.singletonList(sessionDto)).get(0) : null;
+    }
+
+    /**
+     * Teachers and users of the whole list are loaded with one query each. Ids that match nothing are reported
+     * instead of being mapped to {@code null}.
+     */
+    @Override
+    public List<Session> toEntity(List<SessionDto> dtoList) {
+        if (dtoList == null) {
+            return null;
+        }
+
+        Map<Long, Teacher> teachers = byId(this.teacherService.findAllById(dtoList.stream()
+                .filter(Objects::nonNull)
+                .map(SessionDto::getTeacher_id)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet())), Teacher::getId);
+        Map<Long, User> users = byId(this.userService.findAllById(dtoList.stream()
+                .filter(Objects::nonNull)
+                .flatMap(sessionDto -> Optional.ofNullable(sessionDto.getUsers()).orElseGet(Collections::emptyList).stream())
+                .collect(Collectors.toSet())), User::getId);
+
+        Set<Long> unknownTeachers = new TreeSet<>();
+        Set<Long> unknownUsers = new TreeSet<>();
+        List<Session> sessions = dtoList.stream().map(sessionDto -> {
+            if (sessionDto == null) {
+                return null;
+            }
+            Long teacherId = sessionDto.getTeacher_id();
+            if (teacherId != null && !teachers.containsKey(teacherId)) {
+                unknownTeachers.add(teacherId);
+            }
+            List<Long> userIds = Optional.ofNullable(sessionDto.getUsers()).orElseGet(Collections::emptyList);
+            userIds.stream().filter(userId -> !users.containsKey(userId)).forEach(unknownUsers::add);
+
+            return toEntityWithoutReferences(sessionDto)
+                    .setTeacher(teacherId != null ? teachers.get(teacherId) : null)
+                    .setUsers(userIds.stream().map(users::get).filter(Objects::nonNull).collect(Collectors.toSet()));
+        }).collect(Collectors.toList());
+
+        if (!unknownTeachers.isEmpty()) {
+            throw new BadRequestException("Error: Unknown teacher " + unknownTeachers + "!");
+        }
+        if (!unknownUsers.isEmpty()) {
+            throw new BadRequestException("Error: Unknown users " + unknownUsers + "!");
+        }
+        return sessions;
+    }
 
     @Mappings({
             @Mapping(source = "description", target = "description"),
             @Mapping(source = "session.teacher.id", target = "teacher_id"),
-            @Mapping(target = "users", expression = "java(Optional.ofNullable(session.getUsers()).orElseGet(Collections::emptyList).stream().map(u -> u.getId()).collect(Collectors.toList()))"),
+            @Mapping(target = "users", expression = "java(Optional.ofNullable(session.getUsers()).orElseGet(Collections::emptySet).stream().map(u -> u.getId()).collect(Collectors.toList()))"),
     })
     public abstract SessionDto toDto(Session session);
+
+    private static <T> Map<Long, T> byId(Collection<T> entities, Function<T, Long> id) {
+        return entities.stream().collect(Collectors.toMap(id, Function.identity()));
+    }
 }
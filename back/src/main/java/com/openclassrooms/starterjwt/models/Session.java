@@ -1,22 +1,31 @@
 package com.openclassrooms.starterjwt.models;
 
 
+import com.openclassrooms.starterjwt.repository.SecondLevelCacheConfig;
 import lombok.*;
 import lombok.experimental.Accessors;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.*;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import java.time.LocalDateTime;
 import java.util.Date;
-import java.util.List;
+import java.util.Set;
 
 @Entity
-@Table(name = "SESSIONS")
+@Table(name = "SESSIONS", indexes = {
+        @Index(name = "idx_sessions_date_id", columnList = "date, id"),
+        @Index(name = "idx_sessions_teacher_date", columnList = "teacher_id, date")
+})
 @EntityListeners(AuditingEntityListener.class)
 @Data
 @Accessors(chain = true)
@@ -26,6 +35,8 @@ import java.util.List;
 @AllArgsConstructor
 @ToString
 public class Session {
+    public static final int MAX_DURATION_MINUTES = 1440;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -37,6 +48,13 @@ public class Session {
     @NotNull
     private Date date;
 
+    /**
+     * Length in minutes; {@code null} for sessions planned before durations existed, which last the default duration.
+     */
+    @Min(1)
+    @Max(MAX_DURATION_MINUTES)
+    private Integer duration;
+
     @NotNull
     @Size(max = 2500)
     private String description;
@@ -45,12 +63,15 @@ public class Session {
     @JoinColumn(name = "teacher_id", referencedColumnName = "id")
     private Teacher teacher;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany(fetch = FetchType.LAZY)
+    @BatchSize(size = 100)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.SESSION_PARTICIPANTS)
     @JoinTable(
             name = "PARTICIPATE",
             joinColumns = @JoinColumn( name = "session_id" ),
-            inverseJoinColumns = @JoinColumn( name = "user_id" ) )
-    private List<User> users;
+            inverseJoinColumns = @JoinColumn( name = "user_id" ),
+            indexes = @Index(name = "idx_participate_user_session", columnList = "user_id, session_id") )
+    private Set<User> users;
 
     @CreatedDate
     @Column(name = "created_at", updatable = false)
@@ -59,4 +80,13 @@ public class Session {
     @UpdateTimestamp
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
+
+    @Min(1)
+    private Integer capacity;
+
+    /**
+     * Seats taken, maintained by conditional updates in {@link com.openclassrooms.starterjwt.repository.SessionRepository}.
+     */
+    @Column(name = "participant_count", nullable = false, updatable = false)
+    private int participantCount;
 }
@@ -1,7 +1,10 @@
 package com.openclassrooms.starterjwt.models;
 
+import com.openclassrooms.starterjwt.repository.SecondLevelCacheConfig;
 import lombok.*;
 import lombok.experimental.Accessors;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -24,6 +27,8 @@ import java.time.LocalDateTime;
 @RequiredArgsConstructor
 @AllArgsConstructor
 @ToString
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.USERS)
 public class User {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -51,6 +56,13 @@ public class User {
   @NonNull
   private boolean admin;
 
+  /**
+   * SHA-256 of the secret in the user's calendar feed URL, null while no such URL is issued.
+   */
+  @Size(max = 64)
+  @Column(name = "calendar_token", unique = true)
+  private String calendarToken;
+
   @CreatedDate
   @Column(name = "created_at", updatable = false)
   private LocalDateTime createdAt;
@@ -0,0 +1,14 @@
+package com.openclassrooms.starterjwt.payload.request;
+
+import javax.validation.constraints.*;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BulkParticipationRequest {
+  @NotEmpty
+  @Size(max = 500)
+  private List<@NotNull Long> ids;
+}
@@ -0,0 +1,17 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+public class CalendarFeedResponse {
+  private String url;
+
+  public CalendarFeedResponse(String url) {
+    this.url = url;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public void setUrl(String url) {
+    this.url = url;
+  }
+}
@@ -0,0 +1,20 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import org.springframework.http.HttpStatus;
+
+import lombok.Getter;
+
+@Getter
+public class ErrorResponse {
+  private final int status;
+  private final String error;
+  private final String message;
+  private final String path;
+
+  public ErrorResponse(HttpStatus status, String message, String path) {
+    this.status = status.value();
+    this.error = status.getReasonPhrase();
+    this.message = message;
+    this.path = path;
+  }
+}
@@ -0,0 +1,63 @@
+package com.openclassrooms.starterjwt.repository;
+
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.core.config.DefaultConfiguration;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Local, heap-only regions of the Hibernate second-level cache. The cache manager is built here rather than from an
+ * XML file so that region sizes and time-to-live come from the application properties; Hibernate is then told to
+ * use it instead of creating its own. Hit and miss counts per region are published by the Hibernate metrics once
+ * {@code hibernate.generate_statistics} is on.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+    public static final String TEACHERS = "teachers";
+
+    public static final String USERS = "users";
+
+    public static final String SESSION_PARTICIPANTS = "sessionParticipants";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager secondLevelCacheManager(@Value("${oc.app.secondLevelCache.teachers.maxEntries:1000}") long teachersMaxEntries,
+                                                @Value("${oc.app.secondLevelCache.teachers.ttlSeconds:3600}") long teachersTtlSeconds,
+                                                @Value("${oc.app.secondLevelCache.users.maxEntries:10000}") long usersMaxEntries,
+                                                @Value("${oc.app.secondLevelCache.users.ttlSeconds:600}") long usersTtlSeconds,
+                                                @Value("${oc.app.secondLevelCache.sessionParticipants.maxEntries:5000}") long participantsMaxEntries,
+                                                @Value("${oc.app.secondLevelCache.sessionParticipants.ttlSeconds:600}") long participantsTtlSeconds) {
+        // A manager of its own per application context: the provider's default one would be shared by every context
+        // of the JVM (as the test contexts are) and closed by the first of them to shut down
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(URI.create("urn:yoga:second-level-cache:" + UUID.randomUUID()),
+                new DefaultConfiguration(provider.getDefaultClassLoader()));
+        createRegion(cacheManager, TEACHERS, teachersMaxEntries, teachersTtlSeconds);
+        createRegion(cacheManager, USERS, usersMaxEntries, usersTtlSeconds);
+        createRegion(cacheManager, SESSION_PARTICIPANTS, participantsMaxEntries, participantsTtlSeconds);
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager secondLevelCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+    }
+
+    private static void createRegion(CacheManager cacheManager, String name, long maxEntries, long ttlSeconds) {
+        cacheManager.createCache(name, Eh107Configuration.fromEhcacheCacheConfiguration(
+                CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(maxEntries))
+                        .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(ttlSeconds)))));
+    }
+}
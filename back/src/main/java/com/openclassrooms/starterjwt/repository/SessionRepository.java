@@ -1,9 +1,126 @@
 package com.openclassrooms.starterjwt.repository;
 
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
 import com.openclassrooms.starterjwt.models.Session;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
-public interface SessionRepository  extends JpaRepository<Session, Long> {
+public interface SessionRepository  extends JpaRepository<Session, Long>, SessionRepositoryCustom {
+    String SUMMARY = "select new com.openclassrooms.starterjwt.dto.SessionSummaryDto("
+            + "s.id, s.name, s.date, s.duration, s.teacher.id, s.description, s.participantCount, s.capacity, s.createdAt, s.updatedAt) "
+            + "from Session s ";
+
+    interface SessionText {
+        Long getId();
+
+        String getName();
+
+        String getDescription();
+    }
+
+    @Query("select s.id as id, s.name as name, s.description as description from Session s")
+    List<SessionText> findAllTexts();
+
+    interface Schedule {
+        Long getId();
+
+        Long getTeacherId();
+
+        Date getDate();
+
+        Integer getDuration();
+    }
+
+    @Query("select s.id as id, s.teacher.id as teacherId, s.date as date, s.duration as duration from Session s")
+    List<Schedule> findAllSchedules();
+
+    @Query("select s.id as id, s.teacher.id as teacherId, s.date as date, s.duration as duration from Session s "
+            + "where s.id = :id")
+    Optional<Schedule> findScheduleById(@Param("id") Long id);
+
+    @Query("select s.id as id, s.teacher.id as teacherId, s.date as date, s.duration as duration from Session s "
+            + "join s.users u where u.id = :userId")
+    List<Schedule> findUserSchedules(@Param("userId") Long userId);
+
+    /**
+     * The teacher's sessions starting in the open range, read on the (teacher_id, date) index.
+     */
+    @Query("select s.id as id, s.teacher.id as teacherId, s.date as date, s.duration as duration from Session s "
+            + "where s.teacher.id = :teacherId and s.date > :from and s.date < :to")
+    List<Schedule> findTeacherSchedules(@Param("teacherId") Long teacherId, @Param("from") Date from, @Param("to") Date to);
+
+    interface CalendarStamp {
+        Long getId();
+
+        LocalDateTime getUpdatedAt();
+    }
+
+    interface CalendarEntry extends CalendarStamp {
+        String getName();
+
+        Date getDate();
+
+        Integer getDuration();
+
+        String getDescription();
+    }
+
+    @Query("select s.id as id, s.updatedAt as updatedAt from Session s join s.users u where u.id = :userId order by s.date, s.id")
+    List<CalendarStamp> findCalendarStamps(@Param("userId") Long userId);
+
+    @Query("select s.id as id, s.updatedAt as updatedAt, s.name as name, s.date as date, s.duration as duration, "
+            + "s.description as description "
+            + "from Session s where s.id in :ids")
+    List<CalendarEntry> findCalendarEntries(@Param("ids") Collection<Long> ids);
+
+    /**
+     * One row per participation, plus one with a {@code null} user for sessions without participants.
+     */
+    interface ExportRow {
+        Long getId();
+
+        String getName();
+
+        Date getDate();
+
+        Long getTeacherId();
+
+        String getDescription();
+
+        Integer getCapacity();
+
+        Long getUserId();
+    }
+
+    @EntityGraph(attributePaths = "users")
+    Optional<Session> findWithUsersById(Long id);
+
+    /**
+     * Locks the session row until the end of the transaction, for changes that take several seats at once.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from Session s where s.id = :id")
+    Optional<Session> findForUpdateById(@Param("id") Long id);
+
+    @Query(SUMMARY + "order by s.date, s.id")
+    List<SessionSummaryDto> findAllSummaries();
+
+    /**
+     * Sessions strictly after the ({@code date}, {@code id}) key, in key order. Served by idx_sessions_date_id.
+     */
+    @Query(SUMMARY + "where s.date > :date or (s.date = :date and s.id > :id) order by s.date, s.id")
+    List<SessionSummaryDto> findPageAfter(@Param("date") Date date, @Param("id") Long id, Pageable pageable);
 }
@@ -0,0 +1,86 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.dto.SessionCursor;
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Queries built at runtime and participation statements. The latter run through JDBC, so that the second-level
+ * cache only loses the participants of the sessions they touch.
+ */
+public interface SessionRepositoryCustom {
+
+    /**
+     * Summaries in (date, id) order; every {@code null} argument is left out of the query.
+     */
+    List<SessionSummaryDto> search(Date from, Date to, Long teacherId, Collection<Long> ids, SessionCursor after, int limit);
+
+    /**
+     * Summaries of the sessions a user booked, read from PARTICIPATE joined to SESSIONS only: the user's rows of the
+     * (user_id, session_id) index are the only ones visited. Upcoming sessions come in (date, id) order after the
+     * cursor, past ones in reverse order before it.
+     */
+    List<SessionSummaryDto> findUserSessions(Long userId, boolean past, SessionCursor after, int limit);
+
+    /**
+     * Single-row insert into the join table. A second booking of the same user violates the
+     * (session_id, user_id) primary key instead of being looked up first.
+     */
+    int addParticipant(Long sessionId, Long userId);
+
+    int removeParticipant(Long sessionId, Long userId);
+
+    /**
+     * Takes a seat if one is left. The check and the increment are a single statement, so concurrent
+     * reservations serialize on the session row only and cannot overbook.
+     *
+     * @return 1 if a seat was taken, 0 if the session is full or does not exist
+     */
+    int reserveSeat(Long id);
+
+    int releaseSeat(Long id);
+
+    int addSeats(Long id, int delta);
+
+    Set<Long> findParticipantIds(Long sessionId, Collection<Long> userIds);
+
+    Set<Long> findParticipationSessionIds(Long userId, Collection<Long> sessionIds);
+
+    void addParticipants(Long sessionId, List<Long> userIds);
+
+    void removeParticipants(Long sessionId, List<Long> userIds);
+
+    void addParticipations(Long userId, List<Long> sessionIds);
+
+    /**
+     * Deletes the session and its participations without loading them.
+     *
+     * @return 1 if the session was deleted, 0 if it does not exist
+     */
+    int deleteSession(Long sessionId);
+
+    /**
+     * Deletes every participation of the user and gives their seats back.
+     *
+     * @return the ids of the sessions the user left
+     */
+    List<Long> removeAllParticipations(Long userId);
+
+    /**
+     * Takes one seat in each session with the same conditional update as {@link #reserveSeat}.
+     *
+     * @return for each session, whether a seat was taken
+     */
+    boolean[] reserveSeats(List<Long> sessionIds);
+
+    /**
+     * Scalar rows ordered by session, read through a cursor: nothing is kept in the persistence context, so the
+     * caller can walk the whole table with flat memory. Must be consumed and closed inside a transaction.
+     */
+    Stream<SessionRepository.ExportRow> streamExportRows();
+}
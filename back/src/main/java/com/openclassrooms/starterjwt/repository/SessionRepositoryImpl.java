@@ -0,0 +1,330 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.dto.SessionCursor;
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
+import com.openclassrooms.starterjwt.models.Session;
+import org.hibernate.Cache;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+public class SessionRepositoryImpl implements SessionRepositoryCustom {
+    private static final String PARTICIPANTS = Session.class.getName() + ".users";
+
+    private static final String INSERT_PARTICIPATION = "INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?)";
+
+    private static final String DELETE_PARTICIPATION = "DELETE FROM PARTICIPATE WHERE session_id = ? AND user_id = ?";
+
+    private static final String LOCK_SESSION = "SELECT id FROM SESSIONS WHERE id = ? FOR UPDATE";
+
+    private static final String RESERVE_SEAT = "UPDATE SESSIONS SET participant_count = participant_count + 1, updated_at = CURRENT_TIMESTAMP "
+            + "WHERE id = ? AND (capacity IS NULL OR participant_count < capacity)";
+
+    private static final String RELEASE_SEAT = "UPDATE SESSIONS SET participant_count = participant_count - 1, updated_at = CURRENT_TIMESTAMP "
+            + "WHERE id = ? AND participant_count > 0";
+
+    private static final String ADD_SEATS = "UPDATE SESSIONS SET participant_count = participant_count + ?, updated_at = CURRENT_TIMESTAMP "
+            + "WHERE id = ?";
+
+    private static final String USER_SESSIONS = "SELECT s.id, s.name, s.date, s.duration, s.teacher_id, s.description, s.participant_count, "
+            + "s.capacity, s.created_at, s.updated_at FROM PARTICIPATE p JOIN SESSIONS s ON s.id = p.session_id WHERE p.user_id = :userId ";
+
+    private static final String EXPORT_ROWS = "select s.id, s.name, s.date, s.teacher.id, s.description, s.capacity, u.id "
+            + "from Session s left join s.users u order by s.id, u.id";
+
+    private static final RowMapper<SessionSummaryDto> SUMMARY_ROW = (rs, rowNum) -> new SessionSummaryDto(
+            rs.getLong("id"), rs.getString("name"), rs.getTimestamp("date"), rs.getObject("duration", Integer.class),
+            rs.getObject("teacher_id", Long.class), rs.getString("description"), rs.getInt("participant_count"),
+            rs.getObject("capacity", Integer.class), localDateTime(rs.getTimestamp("created_at")),
+            localDateTime(rs.getTimestamp("updated_at")));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final int exportFetchSize;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * @param exportFetchSize fetch size of the export query only. MySQL streams a result set row by row when it is
+     *                        {@link Integer#MIN_VALUE}; a positive value suits other drivers.
+     */
+    public SessionRepositoryImpl(JdbcTemplate jdbcTemplate, @Value("${oc.app.export.fetchSize:500}") int exportFetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.exportFetchSize = exportFetchSize;
+    }
+
+    @Override
+    public List<SessionSummaryDto> search(Date from, Date to, Long teacherId, Collection<Long> ids, SessionCursor after, int limit) {
+        List<String> conditions = new ArrayList<>();
+        if (from != null) {
+            conditions.add("s.date >= :from");
+        }
+        if (to != null) {
+            conditions.add("s.date < :to");
+        }
+        if (teacherId != null) {
+            conditions.add("s.teacher.id = :teacherId");
+        }
+        if (ids != null) {
+            conditions.add("s.id in :ids");
+        }
+        if (after != null) {
+            conditions.add("(s.date > :afterDate or (s.date = :afterDate and s.id > :afterId))");
+        }
+
+        String jpql = SessionRepository.SUMMARY
+                + (conditions.isEmpty() ? "" : "where " + String.join(" and ", conditions) + " ")
+                + "order by s.date, s.id";
+        TypedQuery<SessionSummaryDto> query = entityManager.createQuery(jpql, SessionSummaryDto.class);
+        if (from != null) {
+            query.setParameter("from", from);
+        }
+        if (to != null) {
+            query.setParameter("to", to);
+        }
+        if (teacherId != null) {
+            query.setParameter("teacherId", teacherId);
+        }
+        if (ids != null) {
+            query.setParameter("ids", ids);
+        }
+        if (after != null) {
+            query.setParameter("afterDate", after.getDate());
+            query.setParameter("afterId", after.getId());
+        }
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public List<SessionSummaryDto> findUserSessions(Long userId, boolean past, SessionCursor after, int limit) {
+        String sql = USER_SESSIONS + (past
+                ? "AND (s.date < :date OR (s.date = :date AND s.id < :id)) ORDER BY s.date DESC, s.id DESC LIMIT :limit"
+                : "AND (s.date > :date OR (s.date = :date AND s.id > :id)) ORDER BY s.date, s.id LIMIT :limit");
+        return namedParameterJdbcTemplate.query(sql, new MapSqlParameterSource("userId", userId)
+                        .addValue("date", after.getDate())
+                        .addValue("id", after.getId())
+                        .addValue("limit", limit),
+                SUMMARY_ROW);
+    }
+
+    @Override
+    public Set<Long> findParticipantIds(Long sessionId, Collection<Long> userIds) {
+        return new HashSet<>(namedParameterJdbcTemplate.queryForList(
+                "SELECT user_id FROM PARTICIPATE WHERE session_id = :sessionId AND user_id IN (:userIds)",
+                new MapSqlParameterSource("sessionId", sessionId).addValue("userIds", userIds),
+                Long.class));
+    }
+
+    @Override
+    public Set<Long> findParticipationSessionIds(Long userId, Collection<Long> sessionIds) {
+        return new HashSet<>(namedParameterJdbcTemplate.queryForList(
+                "SELECT session_id FROM PARTICIPATE WHERE user_id = :userId AND session_id IN (:sessionIds)",
+                new MapSqlParameterSource("userId", userId).addValue("sessionIds", sessionIds),
+                Long.class));
+    }
+
+    @Override
+    public int addParticipant(Long sessionId, Long userId) {
+        int inserted = jdbcTemplate.update(INSERT_PARTICIPATION, sessionId, userId);
+        evictParticipants(List.of(sessionId));
+        return inserted;
+    }
+
+    @Override
+    public int removeParticipant(Long sessionId, Long userId) {
+        int deleted = jdbcTemplate.update(DELETE_PARTICIPATION, sessionId, userId);
+        evictParticipants(List.of(sessionId));
+        return deleted;
+    }
+
+    @Override
+    public void addParticipants(Long sessionId, List<Long> userIds) {
+        jdbcTemplate.batchUpdate(INSERT_PARTICIPATION, userIds, userIds.size(), (ps, userId) -> {
+            ps.setLong(1, sessionId);
+            ps.setLong(2, userId);
+        });
+        evictParticipants(List.of(sessionId));
+    }
+
+    @Override
+    public void removeParticipants(Long sessionId, List<Long> userIds) {
+        jdbcTemplate.batchUpdate(DELETE_PARTICIPATION, userIds, userIds.size(), (ps, userId) -> {
+            ps.setLong(1, sessionId);
+            ps.setLong(2, userId);
+        });
+        evictParticipants(List.of(sessionId));
+    }
+
+    @Override
+    public void addParticipations(Long userId, List<Long> sessionIds) {
+        jdbcTemplate.batchUpdate(INSERT_PARTICIPATION, sessionIds, sessionIds.size(), (ps, sessionId) -> {
+            ps.setLong(1, sessionId);
+            ps.setLong(2, userId);
+        });
+        evictParticipants(sessionIds);
+    }
+
+    /**
+     * The session row is locked before PARTICIPATE is touched, in the order a booking takes them, so that a concurrent
+     * booking waits for the deletion instead of deadlocking with it.
+     */
+    @Override
+    public int deleteSession(Long sessionId) {
+        if (jdbcTemplate.queryForList(LOCK_SESSION, Long.class, sessionId).isEmpty()) {
+            return 0;
+        }
+
+        jdbcTemplate.update("DELETE FROM PARTICIPATE WHERE session_id = ?", sessionId);
+        int deleted = jdbcTemplate.update("DELETE FROM SESSIONS WHERE id = ?", sessionId);
+        evictParticipants(List.of(sessionId));
+        return deleted;
+    }
+
+    /**
+     * Seats are given back before the participations are deleted, sessions first as in a booking. Only the
+     * participations read here are deleted: one booked meanwhile keeps its seat, and the user's deletion then fails
+     * on the foreign key instead of leaving a wrong count.
+     */
+    @Override
+    public List<Long> removeAllParticipations(Long userId) {
+        List<Long> sessionIds = jdbcTemplate.queryForList(
+                "SELECT session_id FROM PARTICIPATE WHERE user_id = ? ORDER BY session_id", Long.class, userId);
+        if (sessionIds.isEmpty()) {
+            return sessionIds;
+        }
+
+        MapSqlParameterSource parameters = new MapSqlParameterSource("userId", userId).addValue("sessionIds", sessionIds);
+        namedParameterJdbcTemplate.update("UPDATE SESSIONS SET participant_count = participant_count - 1, "
+                + "updated_at = CURRENT_TIMESTAMP WHERE id IN (:sessionIds) AND participant_count > 0", parameters);
+        namedParameterJdbcTemplate.update(
+                "DELETE FROM PARTICIPATE WHERE user_id = :userId AND session_id IN (:sessionIds)", parameters);
+        evictParticipants(sessionIds);
+        return sessionIds;
+    }
+
+    @Override
+    public int reserveSeat(Long id) {
+        return jdbcTemplate.update(RESERVE_SEAT, id);
+    }
+
+    @Override
+    public int releaseSeat(Long id) {
+        return jdbcTemplate.update(RELEASE_SEAT, id);
+    }
+
+    @Override
+    public int addSeats(Long id, int delta) {
+        return jdbcTemplate.update(ADD_SEATS, delta, id);
+    }
+
+    @Override
+    public boolean[] reserveSeats(List<Long> sessionIds) {
+        int[][] counts = jdbcTemplate.batchUpdate(RESERVE_SEAT, sessionIds, sessionIds.size(),
+                (ps, sessionId) -> ps.setLong(1, sessionId));
+
+        boolean[] reserved = new boolean[sessionIds.size()];
+        for (int i = 0; i < reserved.length; i++) {
+            reserved[i] = counts[0][i] > 0;
+        }
+        return reserved;
+    }
+
+    @Override
+    public Stream<SessionRepository.ExportRow> streamExportRows() {
+        return this.entityManager.createQuery(EXPORT_ROWS, Object[].class)
+                .setHint(QueryHints.HINT_FETCH_SIZE, this.exportFetchSize)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .getResultStream()
+                .map(ExportRow::new);
+    }
+
+    private static LocalDateTime localDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    /**
+     * JDBC writes are invisible to Hibernate. Only the participant collections of the sessions written are evicted,
+     * once the transaction has committed so that a concurrent reader cannot cache the old rows again in between.
+     * Sessions themselves are not cached, so the seat counters need no eviction.
+     */
+    private void evictParticipants(Collection<Long> sessionIds) {
+        Cache cache = entityManager.getEntityManagerFactory().getCache().unwrap(Cache.class);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            sessionIds.forEach(id -> cache.evictCollectionData(PARTICIPANTS, id));
+            return;
+        }
+
+        List<Long> ids = List.copyOf(sessionIds);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                ids.forEach(id -> cache.evictCollectionData(PARTICIPANTS, id));
+            }
+        });
+    }
+
+    private static final class ExportRow implements SessionRepository.ExportRow {
+        private final Object[] columns;
+
+        private ExportRow(Object[] columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        public Long getId() {
+            return (Long) this.columns[0];
+        }
+
+        @Override
+        public String getName() {
+            return (String) this.columns[1];
+        }
+
+        @Override
+        public Date getDate() {
+            return (Date) this.columns[2];
+        }
+
+        @Override
+        public Long getTeacherId() {
+            return (Long) this.columns[3];
+        }
+
+        @Override
+        public String getDescription() {
+            return (String) this.columns[4];
+        }
+
+        @Override
+        public Integer getCapacity() {
+            return (Integer) this.columns[5];
+        }
+
+        @Override
+        public Long getUserId() {
+            return (Long) this.columns[6];
+        }
+    }
+}
@@ -2,8 +2,33 @@ package com.openclassrooms.starterjwt.repository;
 
 import com.openclassrooms.starterjwt.models.Teacher;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
 @Repository
 public interface TeacherRepository  extends JpaRepository<Teacher, Long> {
+    interface TableVersion {
+        long getCount();
+
+        LocalDateTime getLastUpdate();
+    }
+
+    @Query("select count(t) as count, max(t.updatedAt) as lastUpdate from Teacher t")
+    TableVersion findTableVersion();
+
+    @Query("select t.updatedAt from Teacher t where t.id = :id")
+    Optional<LocalDateTime> findUpdatedAtById(@Param("id") Long id);
+
+    /**
+     * Locks the teacher row until the end of the transaction, so that the teacher's sessions are planned one at a time.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select t from Teacher t where t.id = :id")
+    Optional<Teacher> findForUpdateById(@Param("id") Long id);
 }
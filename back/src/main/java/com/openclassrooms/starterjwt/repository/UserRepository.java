@@ -3,6 +3,9 @@ package com.openclassrooms.starterjwt.repository;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.openclassrooms.starterjwt.models.User;
@@ -12,4 +15,30 @@ public interface UserRepository extends JpaRepository<User, Long> {
   Optional<User> findByEmail(String email);
 
   Boolean existsByEmail(String email); 
+
+  @Query("select u.email from User u where u.id = :id")
+  Optional<String> findEmailById(@Param("id") Long id);
+
+  /**
+   * Deletes the user without loading it. Their participations must be gone already.
+   *
+   * @return 1 if the user was deleted, 0 if it does not exist
+   */
+  @Modifying
+  @Query("delete from User u where u.id = :id")
+  int deleteUser(@Param("id") Long id);
+
+  @Query("select u.id from User u where u.calendarToken = :token")
+  Optional<Long> findIdByCalendarToken(@Param("token") String token);
+
+  /**
+   * @return 1 if the token was set, 0 if the user does not exist
+   */
+  @Modifying
+  @Query("update User u set u.calendarToken = :token where u.id = :id")
+  int updateCalendarToken(@Param("id") Long id, @Param("token") String token);
+
+  @Modifying
+  @Query("update User u set u.password = :password where u.email = :email")
+  int updatePassword(@Param("email") String email, @Param("password") String password);
 }
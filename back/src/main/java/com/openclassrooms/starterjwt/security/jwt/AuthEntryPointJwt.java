@@ -1,10 +1,10 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
 
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -15,29 +15,63 @@ import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.stereotype.Component;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
 
+/**
+ * Writes the same body as {@link com.openclassrooms.starterjwt.payload.response.ErrorResponse} without going through
+ * a mapper: the constant parts are encoded once and only the message and path are escaped per request.
+ */
 @Component
 public class AuthEntryPointJwt implements AuthenticationEntryPoint {
 
   private static final Logger logger = LoggerFactory.getLogger(AuthEntryPointJwt.class);
 
+  private static final byte[] PREFIX = "{\"status\":401,\"error\":\"Unauthorized\",\"message\":"
+      .getBytes(StandardCharsets.UTF_8);
+
+  private static final byte[] PATH = ",\"path\":".getBytes(StandardCharsets.UTF_8);
+
+  private static final byte[] NULL = "null".getBytes(StandardCharsets.UTF_8);
+
+  private static final byte QUOTE = '"';
+
+  private static final byte END = '}';
+
   @Override
   public void commence(HttpServletRequest request, HttpServletResponse response, AuthenticationException authException)
       throws IOException, ServletException {
-    logger.error("Unauthorized error: {}", authException.getMessage());
+    logger.debug("Unauthorized error: {}", authException.getMessage());
+
+    byte[] message = encode(authException.getMessage());
+    byte[] path = encode(request.getServletPath());
 
     response.setContentType(MediaType.APPLICATION_JSON_VALUE);
     response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+    response.setContentLength(PREFIX.length + length(message) + PATH.length + length(path) + 1);
 
-    final Map<String, Object> body = new HashMap<>();
-    body.put("status", HttpServletResponse.SC_UNAUTHORIZED);
-    body.put("error", "Unauthorized");
-    body.put("message", authException.getMessage());
-    body.put("path", request.getServletPath());
+    ServletOutputStream out = response.getOutputStream();
+    out.write(PREFIX);
+    write(out, message);
+    out.write(PATH);
+    write(out, path);
+    out.write(END);
+  }
 
-    final ObjectMapper mapper = new ObjectMapper();
-    mapper.writeValue(response.getOutputStream(), body);
+  private static byte[] encode(String value) {
+    return value == null ? null : JsonStringEncoder.getInstance().quoteAsUTF8(value);
   }
 
+  private static int length(byte[] encoded) {
+    return encoded == null ? NULL.length : encoded.length + 2;
+  }
+
+  private static void write(ServletOutputStream out, byte[] encoded) throws IOException {
+    if (encoded == null) {
+      out.write(NULL);
+      return;
+    }
+    out.write(QUOTE);
+    out.write(encoded);
+    out.write(QUOTE);
+  }
 }
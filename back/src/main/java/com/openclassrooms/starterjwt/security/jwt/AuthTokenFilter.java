@@ -10,6 +10,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -26,6 +27,16 @@ public class AuthTokenFilter extends OncePerRequestFilter {
   @Autowired
   private UserDetailsServiceImpl userDetailsService;
 
+  @Autowired
+  private TokenDenylist tokenDenylist;
+
+  /**
+   * Off by default: a principal rebuilt from claims keeps a deleted or demoted user's id and admin flag until the
+   * token expires, while the DB-backed lookup (cached by UserDetailsCache) sees the change at once.
+   */
+  @Value("${oc.app.jwtStatelessPrincipal:false}")
+  private boolean statelessPrincipal;
+
   private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
   @Override
@@ -33,10 +44,15 @@ public class AuthTokenFilter extends OncePerRequestFilter {
       throws ServletException, IOException {
     try {
       String jwt = parseJwt(request);
-      if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-        String username = jwtUtils.getUserNameFromJwtToken(jwt);
+      JwtVerification verification = jwt != null ? jwtUtils.verifyJwtToken(jwt) : null;
+      if (verification != null && verification.isValid() && !tokenDenylist.isRevoked(verification.getClaims().getId())) {
+        String username = verification.getClaims().getSubject();
+
+        UserDetails userDetails = statelessPrincipal ? jwtUtils.getUserDetailsFromClaims(verification.getClaims()) : null;
+        if (userDetails == null) {
+          userDetails = userDetailsService.loadUserByUsername(username);
+        }
 
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
         UsernamePasswordAuthenticationToken authentication =
             new UsernamePasswordAuthenticationToken(
                 userDetails,
@@ -0,0 +1,70 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, thread-safe Bloom filter over strings. A negative answer is exact; a positive one must be confirmed.
+ */
+class BloomFilter {
+  private final AtomicLongArray bits;
+
+  private final int bitCount;
+
+  private final int hashCount;
+
+  BloomFilter(int expectedInsertions, double falsePositiveRate) {
+    int n = Math.max(1, expectedInsertions);
+    long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+    this.bitCount = (int) Math.max(64, Math.min(m, Integer.MAX_VALUE - 63));
+    this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    this.bits = new AtomicLongArray((bitCount + 63) / 64);
+  }
+
+  void put(String value) {
+    long hash = hash64(value);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    for (int i = 1; i <= hashCount; i++) {
+      int index = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+      long mask = 1L << index;
+      int word = index >>> 6;
+      long current;
+      do {
+        current = bits.get(word);
+        if ((current & mask) != 0) {
+          break;
+        }
+      } while (!bits.compareAndSet(word, current, current | mask));
+    }
+  }
+
+  boolean mightContain(String value) {
+    long hash = hash64(value);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    for (int i = 1; i <= hashCount; i++) {
+      int index = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+      if ((bits.get(index >>> 6) & (1L << index)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * FNV-1a over the UTF-16 chars followed by a murmur3 finalizer to spread the bits.
+   */
+  private static long hash64(String value) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < value.length(); i++) {
+      hash ^= value.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
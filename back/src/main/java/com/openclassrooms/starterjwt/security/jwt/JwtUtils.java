@@ -1,6 +1,10 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
+import java.security.Key;
 import java.util.Date;
+import java.util.UUID;
+
+import javax.crypto.spec.SecretKeySpec;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,49 +15,142 @@ import org.springframework.stereotype.Component;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 
 import io.jsonwebtoken.*;
+import io.jsonwebtoken.impl.TextCodec;
 
 @Component
 public class JwtUtils {
   private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
 
+  static final String CLAIM_ID = "id";
+  static final String CLAIM_FIRST_NAME = "firstName";
+  static final String CLAIM_LAST_NAME = "lastName";
+  static final String CLAIM_ADMIN = "admin";
+
   @Value("${oc.app.jwtSecret}")
   private String jwtSecret;
 
   @Value("${oc.app.jwtExpirationMs}")
   private int jwtExpirationMs;
 
+  @Value("${oc.app.jwtCacheSize:10000}")
+  private int jwtCacheSize;
+
+  private volatile Key signingKey;
+
+  private volatile JwtParser jwtParser;
+
+  private volatile VerifiedTokenCache verifiedTokens;
+
   public String generateJwtToken(Authentication authentication) {
 
     UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
 
     return Jwts.builder()
         .setSubject((userPrincipal.getUsername()))
+        .setId(UUID.randomUUID().toString())
+        .claim(CLAIM_ID, userPrincipal.getId())
+        .claim(CLAIM_FIRST_NAME, userPrincipal.getFirstName())
+        .claim(CLAIM_LAST_NAME, userPrincipal.getLastName())
+        .claim(CLAIM_ADMIN, userPrincipal.getAdmin())
         .setIssuedAt(new Date())
         .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-        .signWith(SignatureAlgorithm.HS512, jwtSecret)
+        .signWith(SignatureAlgorithm.HS512, signingKey())
         .compact();
   }
 
   public String getUserNameFromJwtToken(String token) {
-    return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getSubject();
+    return jwtParser().parseClaimsJws(token).getBody().getSubject();
   }
 
   public boolean validateJwtToken(String authToken) {
+    return verifyJwtToken(authToken).isValid();
+  }
+
+  /**
+   * Parses and checks the token once, returning its claims or the reason it was rejected.
+   * Tokens verified recently are served from a bounded cache until they expire.
+   */
+  public JwtVerification verifyJwtToken(String authToken) {
+    VerifiedTokenCache cache = verifiedTokens();
+    if (cache != null && authToken != null) {
+      Claims cached = cache.get(authToken);
+      if (cached != null) {
+        return JwtVerification.valid(cached);
+      }
+    }
+
     try {
-      Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-      return true;
+      Claims claims = jwtParser().parseClaimsJws(authToken).getBody();
+      if (cache != null) {
+        cache.put(authToken, claims);
+      }
+      return JwtVerification.valid(claims);
     } catch (SignatureException e) {
       logger.error("Invalid JWT signature: {}", e.getMessage());
+      return JwtVerification.failed(JwtVerification.Failure.INVALID_SIGNATURE);
     } catch (MalformedJwtException e) {
       logger.error("Invalid JWT token: {}", e.getMessage());
+      return JwtVerification.failed(JwtVerification.Failure.MALFORMED);
     } catch (ExpiredJwtException e) {
       logger.error("JWT token is expired: {}", e.getMessage());
+      return JwtVerification.failed(JwtVerification.Failure.EXPIRED);
     } catch (UnsupportedJwtException e) {
       logger.error("JWT token is unsupported: {}", e.getMessage());
+      return JwtVerification.failed(JwtVerification.Failure.UNSUPPORTED);
     } catch (IllegalArgumentException e) {
       logger.error("JWT claims string is empty: {}", e.getMessage());
+      return JwtVerification.failed(JwtVerification.Failure.EMPTY);
+    }
+  }
+
+  /**
+   * Rebuilds the principal embedded in verified claims, or returns null for tokens issued without it.
+   */
+  public UserDetailsImpl getUserDetailsFromClaims(Claims claims) {
+    Object id = claims.get(CLAIM_ID);
+    if (!(id instanceof Number)) {
+      return null;
     }
 
-    return false;
+    return UserDetailsImpl
+            .builder()
+            .id(((Number) id).longValue())
+            .username(claims.getSubject())
+            .firstName(claims.get(CLAIM_FIRST_NAME, String.class))
+            .lastName(claims.get(CLAIM_LAST_NAME, String.class))
+            .admin(Boolean.TRUE.equals(claims.get(CLAIM_ADMIN, Boolean.class)))
+            .build();
+  }
+
+  private Key signingKey() {
+    Key key = signingKey;
+    if (key == null) {
+      key = new SecretKeySpec(TextCodec.BASE64.decode(jwtSecret), SignatureAlgorithm.HS512.getJcaName());
+      signingKey = key;
+    }
+    return key;
+  }
+
+  private JwtParser jwtParser() {
+    JwtParser parser = jwtParser;
+    if (parser == null) {
+      parser = Jwts.parser().setSigningKey(signingKey());
+      jwtParser = parser;
+    }
+    return parser;
+  }
+
+  private VerifiedTokenCache verifiedTokens() {
+    VerifiedTokenCache cache = verifiedTokens;
+    if (cache == null && jwtCacheSize > 0) {
+      synchronized (this) {
+        cache = verifiedTokens;
+        if (cache == null) {
+          cache = new VerifiedTokenCache(jwtCacheSize);
+          verifiedTokens = cache;
+        }
+      }
+    }
+    return cache;
   }
 }
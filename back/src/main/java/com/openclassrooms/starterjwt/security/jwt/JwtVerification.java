@@ -0,0 +1,40 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import io.jsonwebtoken.Claims;
+import lombok.Getter;
+
+/**
+ * Result of a single JWT verification: either the verified claims or the reason the token was rejected.
+ */
+@Getter
+public final class JwtVerification {
+
+  public enum Failure {
+    EMPTY,
+    MALFORMED,
+    INVALID_SIGNATURE,
+    EXPIRED,
+    UNSUPPORTED
+  }
+
+  private final Claims claims;
+
+  private final Failure failure;
+
+  private JwtVerification(Claims claims, Failure failure) {
+    this.claims = claims;
+    this.failure = failure;
+  }
+
+  public static JwtVerification valid(Claims claims) {
+    return new JwtVerification(claims, null);
+  }
+
+  public static JwtVerification failed(Failure failure) {
+    return new JwtVerification(null, failure);
+  }
+
+  public boolean isValid() {
+    return failure == null;
+  }
+}
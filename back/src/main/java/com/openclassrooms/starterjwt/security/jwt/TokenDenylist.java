@@ -0,0 +1,93 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.models.RevokedToken;
+import com.openclassrooms.starterjwt.repository.RevokedTokenRepository;
+
+/**
+ * Revoked token ids ({@code jti}) until their natural expiration.
+ * Lookups hit a Bloom filter first so that the common, non-revoked case never touches the exact set;
+ * entries are persisted in REVOKED_TOKENS, reloaded at startup and swept once expired.
+ */
+@Component
+public class TokenDenylist {
+  private static final Logger logger = LoggerFactory.getLogger(TokenDenylist.class);
+
+  private final RevokedTokenRepository revokedTokenRepository;
+
+  private final int expectedRevocations;
+
+  private final ConcurrentHashMap<String, Long> revoked = new ConcurrentHashMap<>();
+
+  private volatile BloomFilter bloomFilter;
+
+  public TokenDenylist(RevokedTokenRepository revokedTokenRepository,
+                       @Value("${oc.app.jwtDenylist.expectedRevocations:100000}") int expectedRevocations) {
+    this.revokedTokenRepository = revokedTokenRepository;
+    this.expectedRevocations = expectedRevocations;
+    this.bloomFilter = newBloomFilter();
+  }
+
+  @PostConstruct
+  public void load() {
+    sweep();
+  }
+
+  public boolean isRevoked(String jti) {
+    if (jti == null || !bloomFilter.mightContain(jti)) {
+      return false;
+    }
+
+    Long expiresAt = revoked.get(jti);
+    return expiresAt != null && expiresAt > System.currentTimeMillis();
+  }
+
+  public synchronized void revoke(String jti, Date expiresAt) {
+    revokedTokenRepository.save(new RevokedToken(jti, expiresAt));
+    revoked.put(jti, expiresAt.getTime());
+    bloomFilter.put(jti);
+  }
+
+  public int size() {
+    return revoked.size();
+  }
+
+  /**
+   * Drops expired entries from the table and from memory, picks up revocations made by other nodes
+   * and rebuilds the Bloom filter so that it does not fill up over time.
+   */
+  @Scheduled(fixedDelayString = "${oc.app.jwtDenylist.sweepMs:60000}", initialDelayString = "${oc.app.jwtDenylist.sweepMs:60000}")
+  public synchronized void sweep() {
+    Date now = new Date();
+    int purged = revokedTokenRepository.deleteExpired(now);
+    List<RevokedToken> live = revokedTokenRepository.findByExpiresAtAfter(now);
+
+    BloomFilter rebuilt = newBloomFilter();
+    revoked.keySet().retainAll(live.stream().map(RevokedToken::getJti).collect(Collectors.toSet()));
+    for (RevokedToken token : live) {
+      revoked.put(token.getJti(), token.getExpiresAt().getTime());
+      rebuilt.put(token.getJti());
+    }
+    bloomFilter = rebuilt;
+
+    if (purged > 0) {
+      logger.info("Purged {} expired revoked tokens, {} still revoked", purged, revoked.size());
+    }
+  }
+
+  private BloomFilter newBloomFilter() {
+    return new BloomFilter(expectedRevocations, 0.01);
+  }
+}
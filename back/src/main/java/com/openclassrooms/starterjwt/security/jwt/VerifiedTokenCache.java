@@ -0,0 +1,69 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * Bounded cache of tokens whose signature has already been checked, keyed by the raw token string.
+ * An entry is only returned while the token's own expiration is in the future.
+ */
+class VerifiedTokenCache {
+  private final int maxSize;
+
+  private final ConcurrentHashMap<String, Claims> entries;
+
+  VerifiedTokenCache(int maxSize) {
+    this.maxSize = maxSize;
+    this.entries = new ConcurrentHashMap<>(Math.min(maxSize, 1024));
+  }
+
+  Claims get(String token) {
+    Claims claims = entries.get(token);
+    if (claims == null) {
+      return null;
+    }
+
+    if (isExpired(claims, System.currentTimeMillis())) {
+      entries.remove(token, claims);
+      return null;
+    }
+
+    return claims;
+  }
+
+  void put(String token, Claims claims) {
+    if (entries.size() >= maxSize) {
+      evict();
+    }
+    entries.put(token, claims);
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  private synchronized void evict() {
+    if (entries.size() < maxSize) {
+      return;
+    }
+
+    long now = System.currentTimeMillis();
+    entries.values().removeIf(claims -> isExpired(claims, now));
+
+    // Still full of live tokens: drop an arbitrary quarter rather than tracking recency on every hit.
+    Iterator<String> tokens = entries.keySet().iterator();
+    int target = maxSize - Math.max(1, maxSize / 4);
+    while (entries.size() > target && tokens.hasNext()) {
+      tokens.next();
+      tokens.remove();
+    }
+  }
+
+  private static boolean isExpired(Claims claims, long now) {
+    Date expiration = claims.getExpiration();
+    return expiration != null && expiration.getTime() <= now;
+  }
+}
@@ -0,0 +1,55 @@
+package com.openclassrooms.starterjwt.security.password;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Picks the BCrypt cost at startup: the highest cost whose hash still fits in the target latency on this machine.
+ */
+@Component
+public class BCryptCalibrator {
+  private static final Logger logger = LoggerFactory.getLogger(BCryptCalibrator.class);
+
+  private static final String CALIBRATION_PASSWORD = "calibration-password";
+
+  private final int strength;
+
+  public BCryptCalibrator(@Value("${oc.app.bcrypt.targetMs:250}") long targetMs,
+                          @Value("${oc.app.bcrypt.strength:10}") int strength,
+                          @Value("${oc.app.bcrypt.minStrength:10}") int minStrength,
+                          @Value("${oc.app.bcrypt.maxStrength:14}") int maxStrength) {
+    if (targetMs > 0) {
+      this.strength = calibrate(targetMs, minStrength, maxStrength);
+      logger.info("BCrypt cost calibrated to {} for a target of {} ms per hash", this.strength, targetMs);
+    } else {
+      this.strength = strength;
+    }
+  }
+
+  public int getStrength() {
+    return strength;
+  }
+
+  static int calibrate(long targetMs, int minStrength, int maxStrength) {
+    // Warm up the JIT so that the first measurement is not inflated.
+    new BCryptPasswordEncoder(4).encode(CALIBRATION_PASSWORD);
+
+    int chosen = minStrength;
+    for (int candidate = minStrength; candidate <= maxStrength; candidate++) {
+      BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(candidate);
+      long start = System.nanoTime();
+      encoder.encode(CALIBRATION_PASSWORD);
+      long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+      if (elapsedMs > targetMs) {
+        break;
+      }
+      chosen = candidate;
+    }
+
+    return chosen;
+  }
+}
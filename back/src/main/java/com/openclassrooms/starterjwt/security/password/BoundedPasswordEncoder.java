@@ -0,0 +1,37 @@
+package com.openclassrooms.starterjwt.security.password;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Runs the expensive operations of the wrapped encoder on the {@link PasswordHashingExecutor}.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+  private final PasswordEncoder delegate;
+
+  private final PasswordHashingExecutor executor;
+
+  public BoundedPasswordEncoder(PasswordEncoder delegate, PasswordHashingExecutor executor) {
+    this.delegate = delegate;
+    this.executor = executor;
+  }
+
+  @Override
+  public String encode(CharSequence rawPassword) {
+    return executor.execute(() -> delegate.encode(rawPassword));
+  }
+
+  @Override
+  public boolean matches(CharSequence rawPassword, String encodedPassword) {
+    return executor.execute(() -> delegate.matches(rawPassword, encodedPassword));
+  }
+
+  /**
+   * A rehash after login is best-effort: it is only asked for while the pool has an idle thread, so that a rush
+   * does not pay for a second hash per login and a valid login is not turned into a 503 by a full queue.
+   * The old hash still matches and is upgraded on a later, quieter login.
+   */
+  @Override
+  public boolean upgradeEncoding(String encodedPassword) {
+    return delegate.upgradeEncoding(encodedPassword) && executor.hasIdleThread();
+  }
+}
@@ -0,0 +1,39 @@
+package com.openclassrooms.starterjwt.security.password;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * BCrypt encoder that asks for a rehash whenever a stored hash was made with another cost than the configured one,
+ * in either direction, so that the cost can follow the hardware.
+ */
+public class CalibratedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+  private static final Pattern BCRYPT_PREFIX = Pattern.compile("\\A\\$2([ayb])?\\$(\\d\\d)\\$");
+
+  private final int strength;
+
+  public CalibratedBCryptPasswordEncoder(int strength) {
+    super(strength);
+    this.strength = strength;
+  }
+
+  public int getStrength() {
+    return strength;
+  }
+
+  @Override
+  public boolean upgradeEncoding(String encodedPassword) {
+    if (encodedPassword == null) {
+      return false;
+    }
+
+    Matcher matcher = BCRYPT_PREFIX.matcher(encodedPassword);
+    if (!matcher.find()) {
+      return false;
+    }
+
+    return Integer.parseInt(matcher.group(2)) != strength;
+  }
+}
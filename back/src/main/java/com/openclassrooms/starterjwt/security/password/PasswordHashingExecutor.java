@@ -0,0 +1,144 @@
+package com.openclassrooms.starterjwt.security.password;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Fixed-size pool with a bounded queue that runs password hashing off the request threads.
+ * When the queue is full the caller gets a {@link ServiceUnavailableException} immediately instead of waiting.
+ */
+@Component
+public class PasswordHashingExecutor implements MeterBinder {
+  private static final Logger logger = LoggerFactory.getLogger(PasswordHashingExecutor.class);
+
+  private final ThreadPoolExecutor executor;
+
+  private final long timeoutMs;
+
+  private final long retryAfterSeconds;
+
+  private final LongAdder completed = new LongAdder();
+
+  private final LongAdder totalNanos = new LongAdder();
+
+  private final LongAdder rejected = new LongAdder();
+
+  public PasswordHashingExecutor(@Value("${oc.app.passwordHashing.threads:0}") int threads,
+                                 @Value("${oc.app.passwordHashing.queueCapacity:20}") int queueCapacity,
+                                 @Value("${oc.app.passwordHashing.timeoutMs:3000}") long timeoutMs,
+                                 @Value("${oc.app.passwordHashing.retryAfterSeconds:2}") long retryAfterSeconds) {
+    int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("password-hashing-");
+    threadFactory.setDaemon(true);
+
+    this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    this.timeoutMs = timeoutMs;
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public <T> T execute(Callable<T> task) {
+    Future<T> future;
+    try {
+      future = executor.submit(() -> {
+        long start = System.nanoTime();
+        try {
+          return task.call();
+        } finally {
+          totalNanos.add(System.nanoTime() - start);
+          completed.increment();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      rejected.increment();
+      throw overloaded();
+    }
+
+    try {
+      return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      future.cancel(true);
+      rejected.increment();
+      throw overloaded();
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw overloaded();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  /**
+   * Whether a task submitted now would start at once, for optional work that should not compete with logins.
+   */
+  public boolean hasIdleThread() {
+    return executor.getQueue().isEmpty() && executor.getActiveCount() < executor.getMaximumPoolSize();
+  }
+
+  public int getQueueSize() {
+    return executor.getQueue().size();
+  }
+
+  public int getActiveCount() {
+    return executor.getActiveCount();
+  }
+
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("password.hashing.queue.size", this, PasswordHashingExecutor::getQueueSize)
+        .description("Password hashing tasks waiting for a thread")
+        .register(registry);
+    Gauge.builder("password.hashing.active", this, PasswordHashingExecutor::getActiveCount)
+        .description("Password hashing tasks currently running")
+        .register(registry);
+    FunctionCounter.builder("password.hashing.rejected", rejected, LongAdder::doubleValue)
+        .description("Password hashing tasks refused because the pool was saturated")
+        .register(registry);
+    FunctionTimer.builder("password.hashing.duration", this,
+            hashing -> hashing.completed.sum(), hashing -> hashing.totalNanos.sum(), TimeUnit.NANOSECONDS)
+        .description("Time spent hashing or checking a password")
+        .register(registry);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private ServiceUnavailableException overloaded() {
+    logger.warn("Password hashing pool saturated (queue: {}, active: {})", getQueueSize(), getActiveCount());
+    return new ServiceUnavailableException("Error: Server is busy, please retry later", retryAfterSeconds);
+  }
+}
@@ -0,0 +1,171 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.exception.TooManyRequestsException;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Throttles login attempts per client address and per email before any password is checked,
+ * so that credential stuffing is refused without paying for a BCrypt comparison.
+ * Each attempt takes a token up front, so that parallel attempts cannot overrun the limits, and a successful login
+ * gives its tokens back: only failures count, and a member's own logins never use up their email's attempts.
+ * The client address is the request's remote address. {@code server.forward-headers-strategy} decides whether it
+ * comes from the forwarded headers: with {@code native}, Tomcat takes {@code X-Forwarded-For} only from the proxies
+ * matched by {@code server.tomcat.remoteip.internal-proxies}, so a direct client cannot pick its own address.
+ */
+@Component
+public class LoginRateLimiter implements MeterBinder {
+  private static final Logger logger = LoggerFactory.getLogger(LoginRateLimiter.class);
+
+  private final Limit ipLimit;
+
+  private final Limit emailLimit;
+
+  private final int maxEntries;
+
+  public LoginRateLimiter(@Value("${oc.app.loginRateLimit.ip.capacity:20}") int ipCapacity,
+                          @Value("${oc.app.loginRateLimit.ip.refillMs:3000}") long ipRefillMs,
+                          @Value("${oc.app.loginRateLimit.email.capacity:5}") int emailCapacity,
+                          @Value("${oc.app.loginRateLimit.email.refillMs:60000}") long emailRefillMs,
+                          @Value("${oc.app.loginRateLimit.maxEntries:100000}") int maxEntries) {
+    this.ipLimit = new Limit(ipCapacity, ipRefillMs);
+    this.emailLimit = new Limit(emailCapacity, emailRefillMs);
+    this.maxEntries = Math.max(1, maxEntries);
+  }
+
+  /**
+   * @throws TooManyRequestsException if either the address or the email has used up its attempts
+   */
+  public void check(String clientAddress, String email) {
+    long now = System.nanoTime();
+    if (clientAddress != null) {
+      ipLimit.consume(clientAddress, now);
+    }
+    if (email != null) {
+      emailLimit.consume(email.toLowerCase(Locale.ROOT), now);
+    }
+  }
+
+  /**
+   * Gives back the tokens taken by {@link #check} for an attempt that authenticated.
+   */
+  public void onSuccess(String clientAddress, String email) {
+    long now = System.nanoTime();
+    if (clientAddress != null) {
+      ipLimit.refund(clientAddress, now);
+    }
+    if (email != null) {
+      emailLimit.refund(email.toLowerCase(Locale.ROOT), now);
+    }
+  }
+
+  public long getRejectedByIp() {
+    return ipLimit.rejected.sum();
+  }
+
+  public long getRejectedByEmail() {
+    return emailLimit.rejected.sum();
+  }
+
+  public int size() {
+    return ipLimit.buckets.size() + emailLimit.buckets.size();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("login.ratelimit.rejected", ipLimit.rejected, LongAdder::doubleValue)
+        .tag("key", "ip")
+        .description("Login attempts refused because the client address exceeded its rate")
+        .register(registry);
+    FunctionCounter.builder("login.ratelimit.rejected", emailLimit.rejected, LongAdder::doubleValue)
+        .tag("key", "email")
+        .description("Login attempts refused because the email exceeded its rate")
+        .register(registry);
+    Gauge.builder("login.ratelimit.buckets", this, LoginRateLimiter::size)
+        .description("Rate limiting buckets currently tracked")
+        .register(registry);
+  }
+
+  private final class Limit {
+    private final int capacity;
+
+    private final long refillNanos;
+
+    private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private Limit(int capacity, long refillMs) {
+      this.capacity = capacity;
+      this.refillNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, refillMs));
+    }
+
+    private void consume(String key, long now) {
+      if (capacity <= 0) {
+        return;
+      }
+
+      TokenBucket bucket = buckets.get(key);
+      if (bucket == null) {
+        if (buckets.size() >= maxEntries) {
+          purge(now);
+        }
+        bucket = buckets.computeIfAbsent(key, k -> new TokenBucket(capacity, refillNanos, now));
+      }
+
+      long waitNanos = bucket.tryConsume(now);
+      if (waitNanos > 0) {
+        rejected.increment();
+        throw new TooManyRequestsException("Error: Too many login attempts, please retry later",
+            Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1)));
+      }
+    }
+
+    private void refund(String key, long now) {
+      TokenBucket bucket = buckets.get(key);
+      if (bucket != null) {
+        bucket.refund(now);
+      }
+    }
+
+    /**
+     * Full buckets go first since forgetting them changes nothing. If the map is still too large, arbitrary
+     * buckets are dropped: the other limit keeps throttling their callers.
+     */
+    private void purge(long now) {
+      synchronized (this) {
+        if (buckets.size() < maxEntries) {
+          return;
+        }
+
+        buckets.values().removeIf(bucket -> bucket.isFull(now));
+
+        int target = maxEntries - Math.max(1, maxEntries / 4);
+        if (buckets.size() <= target) {
+          return;
+        }
+
+        logger.warn("Login rate limiter tracks more than {} active keys, dropping some of them", target);
+        Iterator<String> keys = buckets.keySet().iterator();
+        while (buckets.size() > target && keys.hasNext()) {
+          keys.next();
+          keys.remove();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket. The whole state is a single "theoretical arrival time" (GCRA):
+ * a request is allowed while that time is less than one full bucket ahead of now, and each allowed
+ * request pushes it one refill period further. Rejected requests do not consume anything.
+ */
+class TokenBucket {
+  private final long refillNanos;
+
+  private final long burstNanos;
+
+  private final AtomicLong theoreticalArrival;
+
+  TokenBucket(int capacity, long refillNanos, long now) {
+    this.refillNanos = refillNanos;
+    this.burstNanos = refillNanos * Math.max(0, capacity - 1);
+    this.theoreticalArrival = new AtomicLong(now);
+  }
+
+  /**
+   * @return 0 if a token was taken, otherwise the number of nanoseconds until one is available
+   */
+  long tryConsume(long now) {
+    while (true) {
+      long current = theoreticalArrival.get();
+      long start = Math.max(current, now);
+      long wait = start - burstNanos - now;
+      if (wait > 0) {
+        return wait;
+      }
+      if (theoreticalArrival.compareAndSet(current, start + refillNanos)) {
+        return 0;
+      }
+    }
+  }
+
+  /**
+   * Gives back a token taken by {@link #tryConsume}. Never fills the bucket beyond its capacity, in case the token
+   * was taken from a bucket since dropped, or is given back twice.
+   */
+  void refund(long now) {
+    while (true) {
+      long current = theoreticalArrival.get();
+      if (current <= now) {
+        return;
+      }
+      if (theoreticalArrival.compareAndSet(current, Math.max(current - refillNanos, now))) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * A bucket that has refilled completely carries no information and can be dropped.
+   */
+  boolean isFull(long now) {
+    return theoreticalArrival.get() <= now;
+  }
+}
@@ -0,0 +1,166 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Bounded, TTL-based cache of principals loaded by {@link UserDetailsServiceImpl}.
+ * Every eviction bumps a stamp so that a lookup which started before the eviction cannot put a stale entry back.
+ */
+@Component
+public class UserDetailsCache implements MeterBinder {
+  private static final String CACHE_NAME = "userDetails";
+
+  private final int maxSize;
+
+  private final long ttlMs;
+
+  private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+  private final AtomicLong stamp = new AtomicLong();
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  private final LongAdder evictions = new LongAdder();
+
+  public UserDetailsCache(@Value("${oc.app.userDetailsCache.maxSize:1000}") int maxSize,
+                          @Value("${oc.app.userDetailsCache.ttlMs:60000}") long ttlMs) {
+    this.maxSize = maxSize;
+    this.ttlMs = ttlMs;
+  }
+
+  public boolean isEnabled() {
+    return maxSize > 0 && ttlMs > 0;
+  }
+
+  public UserDetailsImpl get(String username) {
+    Entry entry = entries.get(username);
+    if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+      hits.increment();
+      return entry.userDetails;
+    }
+
+    if (entry != null) {
+      entries.remove(username, entry);
+    }
+    misses.increment();
+    return null;
+  }
+
+  /**
+   * Current eviction stamp, to be read before loading a principal and handed back to {@link #put}.
+   */
+  public long stamp() {
+    return stamp.get();
+  }
+
+  public void put(String username, UserDetailsImpl userDetails, long loadStamp) {
+    if (!isEnabled()) {
+      return;
+    }
+
+    if (entries.size() >= maxSize) {
+      purge();
+    }
+
+    entries.put(username, new Entry(userDetails, System.currentTimeMillis() + ttlMs));
+
+    // An eviction ran while the principal was being loaded: the entry may already be stale.
+    if (stamp.get() != loadStamp) {
+      entries.remove(username);
+    }
+  }
+
+  public void evict(String username) {
+    stamp.incrementAndGet();
+    if (entries.remove(username) != null) {
+      evictions.increment();
+    }
+  }
+
+  public void evictById(Long id) {
+    stamp.incrementAndGet();
+    entries.values().removeIf(entry -> {
+      boolean matches = id.equals(entry.userDetails.getId());
+      if (matches) {
+        evictions.increment();
+      }
+      return matches;
+    });
+  }
+
+  public void clear() {
+    stamp.incrementAndGet();
+    entries.clear();
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public double hitRate() {
+    long hitCount = hits.sum();
+    long total = hitCount + misses.sum();
+    return total == 0 ? 0.0 : (double) hitCount / total;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("cache.size", this, UserDetailsCache::size)
+        .tag("cache", CACHE_NAME)
+        .description("The number of entries in this cache")
+        .register(registry);
+    Gauge.builder("cache.hit.ratio", this, UserDetailsCache::hitRate)
+        .tag("cache", CACHE_NAME)
+        .description("Share of lookups served from this cache")
+        .register(registry);
+    FunctionCounter.builder("cache.gets", hits, LongAdder::doubleValue)
+        .tags("cache", CACHE_NAME, "result", "hit")
+        .register(registry);
+    FunctionCounter.builder("cache.gets", misses, LongAdder::doubleValue)
+        .tags("cache", CACHE_NAME, "result", "miss")
+        .register(registry);
+    FunctionCounter.builder("cache.evictions", evictions, LongAdder::doubleValue)
+        .tag("cache", CACHE_NAME)
+        .register(registry);
+  }
+
+  private synchronized void purge() {
+    if (entries.size() < maxSize) {
+      return;
+    }
+
+    long now = System.currentTimeMillis();
+    entries.values().removeIf(entry -> entry.expiresAt <= now);
+
+    int target = maxSize - Math.max(1, maxSize / 4);
+    Iterator<String> usernames = entries.keySet().iterator();
+    while (entries.size() > target && usernames.hasNext()) {
+      usernames.next();
+      usernames.remove();
+    }
+  }
+
+  private static final class Entry {
+    private final UserDetailsImpl userDetails;
+
+    private final long expiresAt;
+
+    private Entry(UserDetailsImpl userDetails, long expiresAt) {
+      this.userDetails = userDetails;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package com.openclassrooms.starterjwt.security.services;
 
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -10,27 +11,63 @@ import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
   UserRepository userRepository;
 
-  UserDetailsServiceImpl(UserRepository userRepository) {
+  UserDetailsCache userDetailsCache;
+
+  UserDetailsServiceImpl(UserRepository userRepository, UserDetailsCache userDetailsCache) {
     this.userRepository = userRepository;
+    this.userDetailsCache = userDetailsCache;
   }
 
   @Override
   @Transactional
   public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+    if (userDetailsCache.isEnabled()) {
+      UserDetailsImpl cached = userDetailsCache.get(username);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
+    long stamp = userDetailsCache.stamp();
     User user = userRepository.findByEmail(username)
         .orElseThrow(() -> new UsernameNotFoundException("User Not Found with email: " + username));
 
-    return UserDetailsImpl
+    UserDetailsImpl userDetails = UserDetailsImpl
             .builder()
             .id(user.getId())
             .username(user.getEmail())
             .lastName(user.getLastName())
             .firstName(user.getFirstName())
+            .admin(user.isAdmin())
             .password(user.getPassword())
             .build();
+
+    userDetailsCache.put(username, userDetails, stamp);
+    return userDetails;
+  }
+
+  /**
+   * Stores the rehashed password after a successful login with a hash of another BCrypt cost.
+   */
+  @Override
+  @Transactional
+  public UserDetails updatePassword(UserDetails user, String newPassword) {
+    userRepository.updatePassword(user.getUsername(), newPassword);
+    userDetailsCache.evict(user.getUsername());
+
+    UserDetailsImpl userDetails = (UserDetailsImpl) user;
+    return UserDetailsImpl
+            .builder()
+            .id(userDetails.getId())
+            .username(userDetails.getUsername())
+            .lastName(userDetails.getLastName())
+            .firstName(userDetails.getFirstName())
+            .admin(userDetails.getAdmin())
+            .password(newPassword)
+            .build();
   }
 
 }
@@ -0,0 +1,369 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-user iCalendar feeds of booked sessions. A rendered feed is kept until a committed {@link SessionChangedEvent}
+ * touches one of its sessions or names its user, and a rebuild only renders the events of sessions whose
+ * {@code updatedAt} moved: the others come from a cache of rendered events shared by every feed.
+ * Every invalidation bumps a stamp so that a feed built before it cannot be put back afterwards.
+ * Calendar apps subscribe by URL and cannot send a bearer token, so a user can also be issued a secret feed token
+ * to put in the URL. Only its hash is stored: issuing a new one or revoking it disables the previous URL.
+ */
+@Service
+public class CalendarFeedService implements MeterBinder {
+    private static final String CACHE_NAME = "calendarFeeds";
+
+    private static final String CRLF = "\r\n";
+
+    private static final int MAX_LINE_OCTETS = 75;
+
+    private static final int TOKEN_BYTES = 32;
+
+    private static final DateTimeFormatter UTC_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private final SessionRepository sessionRepository;
+
+    private final UserRepository userRepository;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final int maxEntries;
+
+    private final int defaultDurationMinutes;
+
+    private final ConcurrentHashMap<Long, Feed> feeds = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<Long, RenderedEvent> events = new ConcurrentHashMap<>();
+
+    private final AtomicLong stamp = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    public CalendarFeedService(SessionRepository sessionRepository,
+                               UserRepository userRepository,
+                               @Value("${oc.app.calendar.maxEntries:10000}") int maxEntries,
+                               @Value("${oc.app.session.defaultDurationMinutes:60}") int defaultDurationMinutes) {
+        this.sessionRepository = sessionRepository;
+        this.userRepository = userRepository;
+        this.maxEntries = maxEntries;
+        this.defaultDurationMinutes = defaultDurationMinutes;
+    }
+
+    public Feed getFeed(Long userId) {
+        Feed feed = this.feeds.get(userId);
+        if (feed != null) {
+            this.hits.increment();
+            return feed;
+        }
+
+        this.misses.increment();
+        long loadStamp = this.stamp.get();
+        feed = build(userId);
+        if (this.maxEntries <= 0) {
+            return feed;
+        }
+
+        if (this.feeds.size() >= this.maxEntries) {
+            purge();
+        }
+        this.feeds.put(userId, feed);
+
+        // An invalidation ran while the feed was being built: it may already be stale
+        if (this.stamp.get() != loadStamp) {
+            this.feeds.remove(userId, feed);
+        }
+        return feed;
+    }
+
+    /**
+     * The feed of the user the token was issued to, or null if no user holds this token.
+     */
+    public Feed getFeedByToken(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+
+        return this.userRepository.findIdByCalendarToken(hash(token)).map(this::getFeed).orElse(null);
+    }
+
+    /**
+     * Issues a new feed token to the user, replacing the previous one.
+     *
+     * @return the token, which cannot be read back later
+     */
+    @Transactional
+    public String issueToken(Long userId) {
+        byte[] secret = new byte[TOKEN_BYTES];
+        this.random.nextBytes(secret);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(secret);
+
+        if (this.userRepository.updateCalendarToken(userId, hash(token)) == 0) {
+            throw new NotFoundException();
+        }
+        return token;
+    }
+
+    @Transactional
+    public void revokeToken(Long userId) {
+        if (this.userRepository.updateCalendarToken(userId, null) == 0) {
+            throw new NotFoundException();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSessionChanged(SessionChangedEvent event) {
+        Long sessionId = event.getSessionId();
+        Collection<Long> userIds = event.getUserIds();
+
+        this.stamp.incrementAndGet();
+        this.events.remove(sessionId);
+        this.feeds.entrySet().removeIf(entry -> {
+            boolean stale = userIds.contains(entry.getKey()) || entry.getValue().sessionIds.contains(sessionId);
+            if (stale) {
+                this.evictions.increment();
+            }
+            return stale;
+        });
+    }
+
+    public void clear() {
+        this.stamp.incrementAndGet();
+        this.feeds.clear();
+        this.events.clear();
+    }
+
+    public int size() {
+        return this.feeds.size();
+    }
+
+    public double hitRate() {
+        long hitCount = this.hits.sum();
+        long total = hitCount + this.misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("cache.size", this, CalendarFeedService::size)
+                .tag("cache", CACHE_NAME)
+                .description("The number of entries in this cache")
+                .register(registry);
+        Gauge.builder("cache.hit.ratio", this, CalendarFeedService::hitRate)
+                .tag("cache", CACHE_NAME)
+                .description("Share of lookups served from this cache")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", this.hits, LongAdder::doubleValue)
+                .tags("cache", CACHE_NAME, "result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", this.misses, LongAdder::doubleValue)
+                .tags("cache", CACHE_NAME, "result", "miss")
+                .register(registry);
+        FunctionCounter.builder("cache.evictions", this.evictions, LongAdder::doubleValue)
+                .tag("cache", CACHE_NAME)
+                .register(registry);
+    }
+
+    private Feed build(Long userId) {
+        List<SessionRepository.CalendarStamp> stamps = this.sessionRepository.findCalendarStamps(userId);
+
+        List<Long> changed = new ArrayList<>();
+        for (SessionRepository.CalendarStamp calendarStamp : stamps) {
+            RenderedEvent event = this.events.get(calendarStamp.getId());
+            if (event == null || !Objects.equals(event.updatedAt, calendarStamp.getUpdatedAt())) {
+                changed.add(calendarStamp.getId());
+            }
+        }
+        if (!changed.isEmpty()) {
+            for (SessionRepository.CalendarEntry entry : this.sessionRepository.findCalendarEntries(changed)) {
+                this.events.put(entry.getId(), new RenderedEvent(entry.getUpdatedAt(), render(entry)));
+            }
+        }
+
+        StringBuilder calendar = new StringBuilder(256 + stamps.size() * 256)
+                .append("BEGIN:VCALENDAR").append(CRLF)
+                .append("VERSION:2.0").append(CRLF)
+                .append("PRODID:-//Yoga App//Sessions//EN").append(CRLF)
+                .append("CALSCALE:GREGORIAN").append(CRLF)
+                .append("METHOD:PUBLISH").append(CRLF)
+                .append("X-WR-CALNAME:Yoga sessions").append(CRLF);
+        Set<Long> sessionIds = new HashSet<>();
+        for (SessionRepository.CalendarStamp calendarStamp : stamps) {
+            RenderedEvent event = this.events.get(calendarStamp.getId());
+            // Deleted between the two queries: left out, and its deletion event drops this feed anyway
+            if (event != null) {
+                calendar.append(event.text);
+            }
+            sessionIds.add(calendarStamp.getId());
+        }
+        calendar.append("END:VCALENDAR").append(CRLF);
+
+        if (this.events.size() > Math.max(this.maxEntries, 1) * 4) {
+            this.events.clear();
+        }
+        return new Feed(calendar.toString().getBytes(StandardCharsets.UTF_8), Collections.unmodifiableSet(sessionIds));
+    }
+
+    private String render(SessionRepository.CalendarEntry entry) {
+        LocalDateTime updatedAt = entry.getUpdatedAt();
+        String stampedAt = updatedAt != null
+                ? UTC_FORMAT.format(updatedAt.atZone(ZoneId.systemDefault()))
+                : UTC_FORMAT.format(entry.getDate().toInstant());
+
+        StringBuilder event = new StringBuilder(256);
+        line(event, "BEGIN:VEVENT");
+        line(event, "UID:session-" + entry.getId() + "@yoga-app");
+        line(event, "DTSTAMP:" + stampedAt);
+        line(event, "LAST-MODIFIED:" + stampedAt);
+        line(event, "DTSTART:" + UTC_FORMAT.format(entry.getDate().toInstant()));
+        line(event, "DURATION:PT" + (entry.getDuration() != null ? entry.getDuration() : this.defaultDurationMinutes) + "M");
+        line(event, "SUMMARY:" + escape(entry.getName()));
+        if (entry.getDescription() != null) {
+            line(event, "DESCRIPTION:" + escape(entry.getDescription()));
+        }
+        line(event, "END:VEVENT");
+        return event.toString();
+    }
+
+    /**
+     * Appends a content line folded at 75 octets, continuation lines starting with a space, without splitting a
+     * UTF-8 sequence (RFC 5545, section 3.1).
+     */
+    static void line(StringBuilder out, String content) {
+        int octets = 0;
+        for (int i = 0; i < content.length(); ) {
+            int codePoint = content.codePointAt(i);
+            int size = codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+            if (octets + size > MAX_LINE_OCTETS) {
+                out.append(CRLF).append(' ');
+                octets = 1;
+            }
+            out.appendCodePoint(codePoint);
+            octets += size;
+            i += Character.charCount(codePoint);
+        }
+        out.append(CRLF);
+    }
+
+    static String escape(String text) {
+        if (text == null) {
+            return "";
+        }
+
+        StringBuilder escaped = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\':
+                case ';':
+                case ',':
+                    escaped.append('\\').append(c);
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private synchronized void purge() {
+        if (this.feeds.size() < this.maxEntries) {
+            return;
+        }
+
+        int target = this.maxEntries - Math.max(1, this.maxEntries / 4);
+        Iterator<Long> userIds = this.feeds.keySet().iterator();
+        while (this.feeds.size() > target && userIds.hasNext()) {
+            userIds.next();
+            userIds.remove();
+            this.evictions.increment();
+        }
+    }
+
+    /**
+     * A rendered feed. The ETag hashes the body, and the body only depends on the sessions, so a feed rebuilt
+     * without any visible change keeps its tag.
+     */
+    @Getter
+    public static final class Feed {
+        private final byte[] body;
+
+        private final String etag;
+
+        /**
+         * Build time, truncated to the second as HTTP dates are.
+         */
+        private final long lastModified;
+
+        private final Set<Long> sessionIds;
+
+        private Feed(byte[] body, Set<Long> sessionIds) {
+            this.body = body;
+            this.etag = DigestUtils.md5DigestAsHex(body);
+            this.lastModified = System.currentTimeMillis() / 1000 * 1000;
+            this.sessionIds = sessionIds;
+        }
+    }
+
+    private static final class RenderedEvent {
+        private final LocalDateTime updatedAt;
+
+        private final String text;
+
+        private RenderedEvent(LocalDateTime updatedAt, String text) {
+            this.updatedAt = updatedAt;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Time slots of the sessions each member booked, so that a booking is checked against the member's other sessions
+ * without a query. A member's slots are three sorted {@code long} arrays, replaced as a whole on every change; an
+ * overlap check is a binary search followed by a step or two back.
+ * Session times are loaded at startup; a member's slots are loaded from PARTICIPATE the first time they book.
+ * A booking is recorded while its transaction runs, so that a concurrent booking of the same member already sees it,
+ * and withdrawn if that transaction rolls back. A cancellation only frees the slot once committed.
+ */
+@Component
+public class MemberScheduleIndex {
+    private static final long MINUTE_MS = 60_000L;
+
+    private final SessionRepository sessionRepository;
+
+    private final long defaultLengthMs;
+
+    private final ConcurrentHashMap<Long, long[]> slotsBySession = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<Long, Bookings> bookingsByUser = new ConcurrentHashMap<>();
+
+    public MemberScheduleIndex(SessionRepository sessionRepository,
+                               @Value("${oc.app.session.defaultDurationMinutes:60}") int defaultDurationMinutes) {
+        this.sessionRepository = sessionRepository;
+        this.defaultLengthMs = defaultDurationMinutes * MINUTE_MS;
+    }
+
+    @PostConstruct
+    public void load() {
+        for (SessionRepository.Schedule schedule : this.sessionRepository.findAllSchedules()) {
+            schedule(schedule.getId(), schedule.getDate(), schedule.getDuration());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSessionChanged(SessionChangedEvent event) {
+        Long sessionId = event.getSessionId();
+        if (event.getType() == SessionChangedEvent.Type.SAVED) {
+            long[] slot = schedule(sessionId, event.getSession().getDate(), event.getSession().getDuration());
+            if (slot != null) {
+                this.bookingsByUser.replaceAll((userId, bookings) -> bookings.contains(sessionId)
+                        ? bookings.with(sessionId, slot[0], slot[1])
+                        : bookings);
+            }
+        } else if (event.getType() == SessionChangedEvent.Type.DELETED) {
+            this.slotsBySession.remove(sessionId);
+            this.bookingsByUser.replaceAll((userId, bookings) -> bookings.without(sessionId));
+        }
+    }
+
+    /**
+     * Records when a session takes place, for the sessions written in the current transaction.
+     */
+    public long[] schedule(Long sessionId, Date date, Integer duration) {
+        if (date == null) {
+            return null;
+        }
+
+        long start = date.getTime();
+        long[] slot = {start, start + (duration != null ? duration * MINUTE_MS : this.defaultLengthMs)};
+        this.slotsBySession.put(sessionId, slot);
+        return slot;
+    }
+
+    /**
+     * Books the session for the member unless it overlaps one of their other sessions. Should the transaction roll
+     * back, the booking is withdrawn, and so are the member's slots if this call loaded them: the member may not
+     * exist at all.
+     *
+     * @return the id of a booked session overlapping this one, or empty once booked
+     */
+    public Optional<Long> book(Long userId, Long sessionId) {
+        long[] slot = slotOf(sessionId);
+        if (slot == null) {
+            // Unknown session: left to the caller, which reports it
+            return Optional.empty();
+        }
+
+        boolean loaded = loadIfAbsent(userId);
+        Long[] overlapping = new Long[1];
+        boolean[] added = new boolean[1];
+        this.bookingsByUser.computeIfPresent(userId, (id, bookings) -> {
+            if (bookings.contains(sessionId)) {
+                return bookings;
+            }
+            overlapping[0] = bookings.findOverlap(slot[0], slot[1]);
+            if (overlapping[0] != null) {
+                return bookings;
+            }
+            added[0] = true;
+            return bookings.with(sessionId, slot[0], slot[1]);
+        });
+
+        if (added[0]) {
+            onRollback(() -> {
+                cancel(userId, sessionId);
+                if (loaded) {
+                    this.bookingsByUser.computeIfPresent(userId, (id, bookings) -> bookings.isEmpty() ? null : bookings);
+                }
+            });
+        }
+        return Optional.ofNullable(overlapping[0]);
+    }
+
+    /**
+     * Withdraws a booking that was not written after all.
+     */
+    public void cancel(Long userId, Long sessionId) {
+        this.bookingsByUser.computeIfPresent(userId, (id, bookings) -> bookings.without(sessionId));
+    }
+
+    /**
+     * Frees the member's slot once the removal of their participation is committed.
+     */
+    public void release(Long userId, Long sessionId) {
+        afterCommit(() -> cancel(userId, sessionId));
+    }
+
+    /**
+     * Drops all the member's slots once the removal of their participations is committed.
+     */
+    public void forget(Long userId) {
+        afterCommit(() -> this.bookingsByUser.remove(userId));
+    }
+
+    public int size() {
+        return this.bookingsByUser.size();
+    }
+
+    private long[] slotOf(Long sessionId) {
+        long[] slot = this.slotsBySession.get(sessionId);
+        if (slot != null) {
+            return slot;
+        }
+        return this.sessionRepository.findScheduleById(sessionId)
+                .map(schedule -> schedule(schedule.getId(), schedule.getDate(), schedule.getDuration()))
+                .orElse(null);
+    }
+
+    /**
+     * Loads outside of any lock: if two callers race, the first snapshot stored wins and both book into it.
+     *
+     * @return whether this call stored the member's slots
+     */
+    private boolean loadIfAbsent(Long userId) {
+        if (this.bookingsByUser.containsKey(userId)) {
+            return false;
+        }
+
+        Bookings bookings = Bookings.EMPTY;
+        for (SessionRepository.Schedule schedule : this.sessionRepository.findUserSchedules(userId)) {
+            long[] slot = schedule(schedule.getId(), schedule.getDate(), schedule.getDuration());
+            if (slot != null) {
+                bookings = bookings.with(schedule.getId(), slot[0], slot[1]);
+            }
+        }
+        return this.bookingsByUser.putIfAbsent(userId, bookings) == null;
+    }
+
+    private static void onRollback(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        action.run();
+                    }
+                }
+            });
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Immutable slots of one member, ordered by start, with the length of the longest one to bound lookups.
+     */
+    static final class Bookings {
+        static final Bookings EMPTY = new Bookings(new long[0], new long[0], new long[0]);
+
+        private final long[] starts;
+
+        private final long[] ends;
+
+        private final long[] sessionIds;
+
+        private final long maxLength;
+
+        private Bookings(long[] starts, long[] ends, long[] sessionIds) {
+            this.starts = starts;
+            this.ends = ends;
+            this.sessionIds = sessionIds;
+            long longest = 0;
+            for (int i = 0; i < starts.length; i++) {
+                longest = Math.max(longest, ends[i] - starts[i]);
+            }
+            this.maxLength = longest;
+        }
+
+        Long findOverlap(long start, long end) {
+            for (int i = firstStartingAt(end) - 1; i >= 0 && this.starts[i] > start - this.maxLength; i--) {
+                if (this.ends[i] > start) {
+                    return this.sessionIds[i];
+                }
+            }
+            return null;
+        }
+
+        boolean isEmpty() {
+            return this.sessionIds.length == 0;
+        }
+
+        boolean contains(long sessionId) {
+            return indexOf(sessionId) >= 0;
+        }
+
+        Bookings with(long sessionId, long start, long end) {
+            Bookings bookings = without(sessionId);
+            int length = bookings.starts.length;
+            int at = bookings.firstStartingAt(start);
+
+            long[] starts = new long[length + 1];
+            long[] ends = new long[length + 1];
+            long[] sessionIds = new long[length + 1];
+            insert(bookings.starts, starts, at, start);
+            insert(bookings.ends, ends, at, end);
+            insert(bookings.sessionIds, sessionIds, at, sessionId);
+            return new Bookings(starts, ends, sessionIds);
+        }
+
+        Bookings without(long sessionId) {
+            int at = indexOf(sessionId);
+            if (at < 0) {
+                return this;
+            }
+            return new Bookings(remove(this.starts, at), remove(this.ends, at), remove(this.sessionIds, at));
+        }
+
+        private int indexOf(long sessionId) {
+            for (int i = 0; i < this.sessionIds.length; i++) {
+                if (this.sessionIds[i] == sessionId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Index of the first slot starting at or after {@code instant}.
+         */
+        private int firstStartingAt(long instant) {
+            int low = 0;
+            int high = this.starts.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (this.starts[middle] < instant) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private static void insert(long[] source, long[] target, int at, long value) {
+            System.arraycopy(source, 0, target, 0, at);
+            target[at] = value;
+            System.arraycopy(source, at, target, at + 1, source.length - at);
+        }
+
+        private static long[] remove(long[] source, int at) {
+            long[] target = new long[source.length - 1];
+            System.arraycopy(source, 0, target, 0, at);
+            System.arraycopy(source, at + 1, target, at, source.length - at - 1);
+            return target;
+        }
+    }
+}
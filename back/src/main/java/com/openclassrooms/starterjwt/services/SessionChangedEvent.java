@@ -0,0 +1,63 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.Session;
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Published by {@link SessionService} after each write, so that derived in-memory state can follow the table.
+ * Listeners are expected to use {@code @TransactionalEventListener} to only see committed changes.
+ */
+@Getter
+public class SessionChangedEvent {
+    public enum Type {
+        SAVED,
+        DELETED,
+        PARTICIPANTS
+    }
+
+    private final Type type;
+
+    private final Long sessionId;
+
+    /**
+     * The saved state for {@link Type#SAVED}, {@code null} otherwise.
+     */
+    private final Session session;
+
+    /**
+     * Whether a {@link Type#SAVED} session was inserted rather than updated.
+     */
+    private final boolean created;
+
+    /**
+     * The users who joined or left, for {@link Type#PARTICIPANTS}; empty otherwise.
+     */
+    private final Collection<Long> userIds;
+
+    private SessionChangedEvent(Type type, Long sessionId, Session session, boolean created, Collection<Long> userIds) {
+        this.type = type;
+        this.sessionId = sessionId;
+        this.session = session;
+        this.created = created;
+        this.userIds = userIds;
+    }
+
+    public static SessionChangedEvent created(Session session) {
+        return new SessionChangedEvent(Type.SAVED, session.getId(), session, true, Collections.emptyList());
+    }
+
+    public static SessionChangedEvent saved(Session session) {
+        return new SessionChangedEvent(Type.SAVED, session.getId(), session, false, Collections.emptyList());
+    }
+
+    public static SessionChangedEvent deleted(Long sessionId) {
+        return new SessionChangedEvent(Type.DELETED, sessionId, null, false, Collections.emptyList());
+    }
+
+    public static SessionChangedEvent participants(Long sessionId, Collection<Long> userIds) {
+        return new SessionChangedEvent(Type.PARTICIPANTS, sessionId, null, false, userIds);
+    }
+}
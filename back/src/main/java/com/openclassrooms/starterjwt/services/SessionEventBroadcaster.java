@@ -0,0 +1,275 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes committed {@link SessionChangedEvent}s to Server-Sent Events subscribers.
+ * Idle subscribers hold no thread: each one only owns an async response and a small bounded queue of frames.
+ * A frame is serialized once for everybody, and a subscriber's queue is drained by a small shared pool when it
+ * has something to write. A subscriber whose queue overflows is too slow and is disconnected; it reconnects on
+ * its own, as SSE clients do. So is one whose write has been blocked for longer than the send timeout, as found by
+ * the heartbeat.
+ * Closing never waits: a response is only completed by the thread draining it, since completing waits for a write in
+ * progress. A blocked write only returns when the container's write timeout fails it, so the heartbeat gives the
+ * pool a thread for each blocked one meanwhile, and the other subscribers keep being served.
+ */
+@Component
+public class SessionEventBroadcaster implements MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(SessionEventBroadcaster.class);
+
+    private static final MediaType UTF8_TEXT = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+
+    private static final String HEARTBEAT = ":\n\n";
+
+    private final int maxSubscribers;
+
+    private final int queueCapacity;
+
+    private final long timeoutMs;
+
+    private final long sendTimeoutNanos;
+
+    private final int threads;
+
+    private final ThreadPoolExecutor senders;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Subscribers being written to, with when their current write started, in {@link System#nanoTime()}.
+     */
+    private final ConcurrentHashMap<Subscriber, Long> sending = new ConcurrentHashMap<>();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder sent = new LongAdder();
+
+    public SessionEventBroadcaster(@Value("${oc.app.sessionEvents.maxSubscribers:10000}") int maxSubscribers,
+                                   @Value("${oc.app.sessionEvents.queueCapacity:32}") int queueCapacity,
+                                   @Value("${oc.app.sessionEvents.timeoutMs:1800000}") long timeoutMs,
+                                   @Value("${oc.app.sessionEvents.threads:2}") int threads,
+                                   @Value("${oc.app.sessionEvents.sendTimeoutMs:10000}") long sendTimeoutMs) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("session-events-");
+        threadFactory.setDaemon(true);
+
+        this.maxSubscribers = maxSubscribers;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.timeoutMs = timeoutMs;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        this.threads = threads;
+        this.senders = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+    }
+
+    public ResponseBodyEmitter subscribe() {
+        if (this.subscribers.size() >= this.maxSubscribers) {
+            throw new ServiceUnavailableException("Error: Too many event subscribers, please retry later", 5);
+        }
+
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(this.timeoutMs);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+        this.subscribers.add(subscriber);
+
+        // Sends the headers right away, so that the client knows it is connected
+        subscriber.offer(HEARTBEAT);
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSessionChanged(SessionChangedEvent event) {
+        if (this.subscribers.isEmpty()) {
+            return;
+        }
+
+        String name = event.getType() == SessionChangedEvent.Type.SAVED
+                ? (event.isCreated() ? "created" : "updated")
+                : event.getType().name().toLowerCase(Locale.ROOT);
+        broadcast("event: " + name + "\ndata: {\"type\":\"" + name + "\",\"id\":" + event.getSessionId() + "}\n\n");
+    }
+
+    @Scheduled(fixedDelayString = "${oc.app.sessionEvents.heartbeatMs:25000}", initialDelayString = "${oc.app.sessionEvents.heartbeatMs:25000}")
+    public void heartbeat() {
+        long now = System.nanoTime();
+        int blocked = 0;
+        for (Map.Entry<Subscriber, Long> write : this.sending.entrySet()) {
+            if (now - write.getValue() > this.sendTimeoutNanos) {
+                blocked++;
+                if (write.getKey().close()) {
+                    this.dropped.increment();
+                    logger.debug("Dropping a session event subscriber whose write has been blocked for too long");
+                }
+            }
+        }
+        resize(this.threads + blocked);
+        broadcast(HEARTBEAT);
+    }
+
+    public int size() {
+        return this.subscribers.size();
+    }
+
+    public int getSenderThreads() {
+        return this.senders.getCorePoolSize();
+    }
+
+    public long getDroppedCount() {
+        return this.dropped.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("session.events.subscribers", this, SessionEventBroadcaster::size)
+                .description("Clients connected to the session event stream")
+                .register(registry);
+        FunctionCounter.builder("session.events.sent", this.sent, LongAdder::doubleValue)
+                .description("Session event frames written to subscribers")
+                .register(registry);
+        FunctionCounter.builder("session.events.dropped", this.dropped, LongAdder::doubleValue)
+                .description("Subscribers disconnected because they could not keep up")
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.subscribers.forEach(Subscriber::close);
+        this.senders.shutdown();
+    }
+
+    /**
+     * Threads above the core size leave once idle, so the pool shrinks back as blocked writes fail.
+     */
+    private synchronized void resize(int size) {
+        if (size > this.senders.getMaximumPoolSize()) {
+            this.senders.setMaximumPoolSize(size);
+            this.senders.setCorePoolSize(size);
+        } else if (size < this.senders.getCorePoolSize()) {
+            this.senders.setCorePoolSize(size);
+            this.senders.setMaximumPoolSize(size);
+        }
+    }
+
+    private void broadcast(String frame) {
+        for (Subscriber subscriber : this.subscribers) {
+            subscriber.offer(frame);
+        }
+    }
+
+    private final class Subscriber {
+        private final ResponseBodyEmitter emitter;
+
+        private final BlockingQueue<String> frames = new ArrayBlockingQueue<>(queueCapacity);
+
+        /**
+         * Held by the one thread allowed to write to or complete the response.
+         */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscriber(ResponseBodyEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private void offer(String frame) {
+            if (this.closed.get()) {
+                return;
+            }
+            if (!this.frames.offer(frame)) {
+                if (close()) {
+                    dropped.increment();
+                    logger.debug("Dropping a session event subscriber that could not keep up");
+                }
+                return;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (this.scheduled.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    // No write can be in progress without the flag: completing here does not wait
+                    this.closed.set(true);
+                    subscribers.remove(this);
+                    this.emitter.complete();
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                String frame;
+                while (!this.closed.get() && (frame = this.frames.poll()) != null) {
+                    sending.put(this, System.nanoTime());
+                    this.emitter.send(frame, UTF8_TEXT);
+                    sent.increment();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // The client went away or the response already completed
+                close();
+            } finally {
+                sending.remove(this);
+            }
+
+            if (this.closed.get()) {
+                // The flag is kept: nothing is written after this
+                this.frames.clear();
+                this.emitter.complete();
+                return;
+            }
+            this.scheduled.set(false);
+            if (!this.frames.isEmpty() || this.closed.get()) {
+                schedule();
+            }
+        }
+
+        /**
+         * Stops sending to the subscriber. The response is completed by the drain in progress once its write returns,
+         * or by one scheduled now.
+         *
+         * @return whether this call closed it
+         */
+        private boolean close() {
+            if (!this.closed.compareAndSet(false, true)) {
+                return false;
+            }
+            subscribers.remove(this);
+            this.frames.clear();
+            schedule();
+            return true;
+        }
+    }
+}
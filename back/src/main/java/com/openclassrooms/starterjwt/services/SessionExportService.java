@@ -0,0 +1,187 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import lombok.Getter;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Writes every session with its participant ids while reading them, one session at a time, so that the export
+ * needs the same memory for ten sessions as for a million and the first line leaves before the last row is read.
+ */
+@Service
+public class SessionExportService {
+    public enum Format {
+        NDJSON,
+        CSV
+    }
+
+    private static final int FLUSH_EVERY = 100;
+
+    private final SessionRepository sessionRepository;
+
+    private final ObjectMapper objectMapper;
+
+    public SessionExportService(SessionRepository sessionRepository, ObjectMapper objectMapper) {
+        this.sessionRepository = sessionRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    @Transactional(readOnly = true)
+    public void export(Format format, OutputStream out) throws IOException {
+        try (Stream<SessionRepository.ExportRow> rows = this.sessionRepository.streamExportRows()) {
+            if (format == Format.CSV) {
+                writeCsv(rows.iterator(), out);
+            } else {
+                writeNdjson(rows.iterator(), out);
+            }
+        }
+    }
+
+    private void writeNdjson(Iterator<SessionRepository.ExportRow> rows, OutputStream out) throws IOException {
+        SequenceWriter writer = this.objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n")
+                .writeValues(out);
+        SessionRows sessions = new SessionRows(rows);
+        int written = 0;
+        for (ExportedSession session = sessions.next(); session != null; session = sessions.next()) {
+            writer.write(session);
+            if (++written == 1 || written % FLUSH_EVERY == 0) {
+                writer.flush();
+            }
+        }
+        writer.close();
+        if (written > 0) {
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    private void writeCsv(Iterator<SessionRepository.ExportRow> rows, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("id,name,date,teacher_id,description,capacity,users\r\n");
+        writer.flush();
+
+        SessionRows sessions = new SessionRows(rows);
+        int written = 0;
+        for (ExportedSession session = sessions.next(); session != null; session = sessions.next()) {
+            writer.write(String.valueOf(session.getId()));
+            writer.write(',');
+            writer.write(csv(session.getName()));
+            writer.write(',');
+            writer.write(session.getDate() != null ? session.getDate().toInstant().toString() : "");
+            writer.write(',');
+            writer.write(session.getTeacher_id() != null ? String.valueOf(session.getTeacher_id()) : "");
+            writer.write(',');
+            writer.write(csv(session.getDescription()));
+            writer.write(',');
+            writer.write(session.getCapacity() != null ? String.valueOf(session.getCapacity()) : "");
+            writer.write(',');
+            writer.write(session.getUsers().stream().map(String::valueOf).collect(Collectors.joining(" ")));
+            writer.write("\r\n");
+            if (++written % FLUSH_EVERY == 0) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Quotes the value when needed. A value starting like a formula is prefixed with {@code '} and quoted, so that
+     * a spreadsheet opening the file shows it as text instead of evaluating it.
+     */
+    static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (!value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0) {
+            return "\"'" + value.replace("\"", "\"\"") + '"';
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    @Getter
+    static final class ExportedSession {
+        private final Long id;
+
+        private final String name;
+
+        private final Date date;
+
+        private final Long teacher_id;
+
+        private final String description;
+
+        private final Integer capacity;
+
+        private final List<Long> users = new ArrayList<>();
+
+        private ExportedSession(SessionRepository.ExportRow row) {
+            this.id = row.getId();
+            this.name = row.getName();
+            this.date = row.getDate();
+            this.teacher_id = row.getTeacherId();
+            this.description = row.getDescription();
+            this.capacity = row.getCapacity();
+            add(row);
+        }
+
+        private void add(SessionRepository.ExportRow row) {
+            if (row.getUserId() != null) {
+                this.users.add(row.getUserId());
+            }
+        }
+    }
+
+    /**
+     * Folds the consecutive rows of each session, keeping the first row of the following one for the next call.
+     */
+    private static final class SessionRows {
+        private final Iterator<SessionRepository.ExportRow> rows;
+
+        private SessionRepository.ExportRow pending;
+
+        private SessionRows(Iterator<SessionRepository.ExportRow> rows) {
+            this.rows = rows;
+            this.pending = rows.hasNext() ? rows.next() : null;
+        }
+
+        private ExportedSession next() {
+            if (this.pending == null) {
+                return null;
+            }
+
+            ExportedSession session = new ExportedSession(this.pending);
+            this.pending = null;
+            while (this.rows.hasNext()) {
+                SessionRepository.ExportRow row = this.rows.next();
+                if (!row.getId().equals(session.getId())) {
+                    this.pending = row;
+                    break;
+                }
+                session.add(row);
+            }
+            return session;
+        }
+    }
+}
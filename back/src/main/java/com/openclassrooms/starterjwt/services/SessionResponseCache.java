@@ -0,0 +1,186 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Serialized JSON of the session list and of session details, so that repeated reads neither query nor serialize.
+ * Each entry is a future: the first miss loads it while concurrent readers of the same key wait for that single load.
+ * Every committed {@link SessionChangedEvent} drops the list and the changed session; a load still running at that
+ * point completes for its callers but is no longer reachable by later ones.
+ */
+@Component
+public class SessionResponseCache implements MeterBinder {
+    private static final String CACHE_NAME = "sessionResponses";
+
+    private static final String LIST_KEY = "list";
+
+    private final ObjectMapper objectMapper;
+
+    private final int maxEntries;
+
+    private final ConcurrentHashMap<Object, CompletableFuture<byte[]>> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    public SessionResponseCache(ObjectMapper objectMapper,
+                                @Value("${oc.app.sessionCache.maxEntries:1000}") int maxEntries) {
+        this.objectMapper = objectMapper;
+        this.maxEntries = maxEntries;
+    }
+
+    public byte[] getList(Supplier<?> loader) {
+        return get(LIST_KEY, loader);
+    }
+
+    /**
+     * @return the serialized detail, or {@code null} if the loader found no session (which is not cached)
+     */
+    public byte[] getDetail(Long id, Supplier<?> loader) {
+        return get(id, loader);
+    }
+
+    /**
+     * Runs before {@link SessionVersions} moves the ETags, so that a new tag is never paired with evicted bytes.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSessionChanged(SessionChangedEvent event) {
+        evict(LIST_KEY);
+        evict(event.getSessionId());
+    }
+
+    public void clear() {
+        this.entries.clear();
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    public double hitRate() {
+        long hitCount = this.hits.sum();
+        long total = hitCount + this.misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("cache.size", this, SessionResponseCache::size)
+                .tag("cache", CACHE_NAME)
+                .description("The number of entries in this cache")
+                .register(registry);
+        Gauge.builder("cache.hit.ratio", this, SessionResponseCache::hitRate)
+                .tag("cache", CACHE_NAME)
+                .description("Share of lookups served from this cache")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", this.hits, LongAdder::doubleValue)
+                .tags("cache", CACHE_NAME, "result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", this.misses, LongAdder::doubleValue)
+                .tags("cache", CACHE_NAME, "result", "miss")
+                .register(registry);
+        FunctionCounter.builder("cache.evictions", this.evictions, LongAdder::doubleValue)
+                .tag("cache", CACHE_NAME)
+                .register(registry);
+    }
+
+    private byte[] get(Object key, Supplier<?> loader) {
+        if (this.maxEntries <= 0) {
+            Object value = loader.get();
+            return value != null ? serialize(value) : null;
+        }
+
+        CompletableFuture<byte[]> entry = this.entries.get(key);
+        if (entry == null) {
+            CompletableFuture<byte[]> created = new CompletableFuture<>();
+            entry = this.entries.putIfAbsent(key, created);
+            if (entry == null) {
+                this.misses.increment();
+                return load(key, created, loader);
+            }
+        }
+
+        this.hits.increment();
+        try {
+            return entry.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private byte[] load(Object key, CompletableFuture<byte[]> entry, Supplier<?> loader) {
+        if (this.entries.size() > this.maxEntries) {
+            purge();
+        }
+
+        byte[] bytes;
+        try {
+            Object value = loader.get();
+            bytes = value != null ? serialize(value) : null;
+        } catch (RuntimeException e) {
+            this.entries.remove(key, entry);
+            entry.completeExceptionally(e);
+            throw e;
+        }
+
+        if (bytes == null) {
+            this.entries.remove(key, entry);
+        }
+        entry.complete(bytes);
+        return bytes;
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return this.objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void evict(Object key) {
+        if (this.entries.remove(key) != null) {
+            this.evictions.increment();
+        }
+    }
+
+    private synchronized void purge() {
+        if (this.entries.size() <= this.maxEntries) {
+            return;
+        }
+
+        int target = this.maxEntries - Math.max(1, this.maxEntries / 4);
+        Iterator<Object> keys = this.entries.keySet().iterator();
+        while (this.entries.size() > target && keys.hasNext()) {
+            if (!LIST_KEY.equals(keys.next())) {
+                keys.remove();
+                this.evictions.increment();
+            }
+        }
+    }
+}
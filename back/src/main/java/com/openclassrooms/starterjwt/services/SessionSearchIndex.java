@@ -0,0 +1,144 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over the words of session names and descriptions.
+ * Loaded once at startup, then kept in sync with committed {@link SessionChangedEvent}s.
+ * Lookups are lock-free; the rare writes are serialized.
+ */
+@Component
+public class SessionSearchIndex {
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final int MIN_TOKEN_LENGTH = 2;
+
+    private final SessionRepository sessionRepository;
+
+    private final ConcurrentSkipListMap<String, Set<Long>> postings = new ConcurrentSkipListMap<>();
+
+    private final ConcurrentHashMap<Long, Set<String>> tokensBySession = new ConcurrentHashMap<>();
+
+    public SessionSearchIndex(SessionRepository sessionRepository) {
+        this.sessionRepository = sessionRepository;
+    }
+
+    @PostConstruct
+    public void load() {
+        for (SessionRepository.SessionText text : this.sessionRepository.findAllTexts()) {
+            index(text.getId(), text.getName(), text.getDescription());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSessionChanged(SessionChangedEvent event) {
+        if (event.getType() == SessionChangedEvent.Type.SAVED) {
+            index(event.getSessionId(), event.getSession().getName(), event.getSession().getDescription());
+        } else if (event.getType() == SessionChangedEvent.Type.DELETED) {
+            remove(event.getSessionId());
+        }
+    }
+
+    public synchronized void index(Long id, String name, String description) {
+        Set<String> tokens = new HashSet<>(tokenize(name));
+        tokens.addAll(tokenize(description));
+
+        Set<String> previous = this.tokensBySession.getOrDefault(id, Collections.emptySet());
+        for (String token : previous) {
+            if (!tokens.contains(token)) {
+                unlink(token, id);
+            }
+        }
+        for (String token : tokens) {
+            if (!previous.contains(token)) {
+                this.postings.computeIfAbsent(token, t -> ConcurrentHashMap.newKeySet()).add(id);
+            }
+        }
+        this.tokensBySession.put(id, tokens);
+    }
+
+    public synchronized void remove(Long id) {
+        Set<String> tokens = this.tokensBySession.remove(id);
+        if (tokens != null) {
+            tokens.forEach(token -> unlink(token, id));
+        }
+    }
+
+    /**
+     * Ids of the sessions containing every word of the query, each word matching as a prefix.
+     *
+     * @return {@code null} if the query has no searchable word
+     */
+    public Set<Long> search(String query) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty()) {
+            return null;
+        }
+
+        List<Set<Long>> matches = new ArrayList<>(tokens.size());
+        for (String token : new LinkedHashSet<>(tokens)) {
+            Set<Long> ids = new HashSet<>();
+            for (Set<Long> posting : this.postings.subMap(token, true, token + Character.MAX_VALUE, false).values()) {
+                ids.addAll(posting);
+            }
+            if (ids.isEmpty()) {
+                return Collections.emptySet();
+            }
+            matches.add(ids);
+        }
+
+        matches.sort((a, b) -> Integer.compare(a.size(), b.size()));
+        Set<Long> result = matches.get(0);
+        for (int i = 1; i < matches.size() && !result.isEmpty(); i++) {
+            result.retainAll(matches.get(i));
+        }
+        return result;
+    }
+
+    public int size() {
+        return this.tokensBySession.size();
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        for (String token : SEPARATORS.split(normalized)) {
+            if (token.length() >= MIN_TOKEN_LENGTH) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private void unlink(String token, Long id) {
+        Set<Long> ids = this.postings.get(token);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                this.postings.remove(token, ids);
+            }
+        }
+    }
+}
@@ -1,78 +1,423 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.dto.ParticipationResultDto;
+import com.openclassrooms.starterjwt.dto.ParticipationResultDto.Status;
+import com.openclassrooms.starterjwt.dto.SessionCursor;
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 public class SessionService {
+    private static final int MAX_ID_FILTER = 1000;
+
+    private static final int SCAN_BATCH = 500;
+
     private final SessionRepository sessionRepository;
 
     private final UserRepository userRepository;
 
-    public SessionService(SessionRepository sessionRepository, UserRepository userRepository) {
+    private final TeacherRepository teacherRepository;
+
+    private final SessionSearchIndex sessionSearchIndex;
+
+    private final TeacherScheduleIndex teacherScheduleIndex;
+
+    private final MemberScheduleIndex memberScheduleIndex;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public SessionService(SessionRepository sessionRepository,
+                          UserRepository userRepository,
+                          TeacherRepository teacherRepository,
+                          SessionSearchIndex sessionSearchIndex,
+                          TeacherScheduleIndex teacherScheduleIndex,
+                          MemberScheduleIndex memberScheduleIndex,
+                          ApplicationEventPublisher eventPublisher) {
         this.sessionRepository = sessionRepository;
         this.userRepository = userRepository;
+        this.teacherRepository = teacherRepository;
+        this.sessionSearchIndex = sessionSearchIndex;
+        this.teacherScheduleIndex = teacherScheduleIndex;
+        this.memberScheduleIndex = memberScheduleIndex;
+        this.eventPublisher = eventPublisher;
     }
 
+    @Transactional
     public Session create(Session session) {
-        return this.sessionRepository.save(session);
+        int participants = session.getUsers() != null ? session.getUsers().size() : 0;
+        if (session.getCapacity() != null && participants > session.getCapacity()) {
+            throw new BadRequestException("Error: Capacity is lower than the number of participants!");
+        }
+        checkTeacherAvailable(null, session);
+
+        session.setParticipantCount(participants);
+        Session saved = this.sessionRepository.save(session);
+        schedule(saved);
+        if (participants > 0) {
+            this.memberScheduleIndex.schedule(saved.getId(), saved.getDate(), saved.getDuration());
+            for (User user : saved.getUsers()) {
+                if (this.memberScheduleIndex.book(user.getId(), saved.getId()).isPresent()) {
+                    throw new BadRequestException("Error: User " + user.getId() + " already has a session at that time!");
+                }
+            }
+        }
+        this.eventPublisher.publishEvent(SessionChangedEvent.created(saved));
+        return saved;
     }
 
+    /**
+     * Deletes the session and its participations in set-based statements: nothing is loaded, and a missing
+     * session is told by the row count.
+     */
+    @Transactional
     public void delete(Long id) {
-        this.sessionRepository.deleteById(id);
+        if (this.sessionRepository.deleteSession(id) == 0) {
+            throw new NotFoundException();
+        }
+
+        this.eventPublisher.publishEvent(SessionChangedEvent.deleted(id));
+    }
+
+    /**
+     * Takes the user out of every session they booked, before the user is deleted.
+     */
+    @Transactional
+    public void removeAllParticipations(Long userId) {
+        List<Long> sessionIds = this.sessionRepository.removeAllParticipations(userId);
+        for (Long sessionId : sessionIds) {
+            this.eventPublisher.publishEvent(SessionChangedEvent.participants(sessionId, Collections.singletonList(userId)));
+        }
+        this.memberScheduleIndex.forget(userId);
     }
 
     public List<Session> findAll() {
         return this.sessionRepository.findAll();
     }
 
+    public List<SessionSummaryDto> findAllSummaries() {
+        return this.sessionRepository.findAllSummaries();
+    }
+
+    public List<SessionSummaryDto> findPage(SessionCursor after, int size) {
+        return this.sessionRepository.findPageAfter(after.getDate(), after.getId(), PageRequest.of(0, size));
+    }
+
+    public List<SessionSummaryDto> findUserSessions(Long userId, boolean past, SessionCursor after, int size) {
+        return this.sessionRepository.findUserSessions(userId, past, after, size);
+    }
+
+    /**
+     * Date and teacher filters run in the database on the SESSIONS indexes; words are resolved by the
+     * {@link SessionSearchIndex}. When the words match too many sessions for an id filter, the indexed date
+     * range is walked instead and rows are kept if they are among the matches.
+     */
+    public List<SessionSummaryDto> search(Date from, Date to, Long teacherId, String text, SessionCursor after, int size) {
+        Set<Long> matches = text != null ? this.sessionSearchIndex.search(text) : null;
+        if (matches != null && matches.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (matches == null || matches.size() <= MAX_ID_FILTER) {
+            return this.sessionRepository.search(from, to, teacherId, matches, after, size);
+        }
+
+        List<SessionSummaryDto> sessions = new ArrayList<>(size);
+        SessionCursor position = after;
+        while (sessions.size() < size) {
+            List<SessionSummaryDto> batch = this.sessionRepository.search(from, to, teacherId, null, position, SCAN_BATCH);
+            for (SessionSummaryDto session : batch) {
+                if (matches.contains(session.getId()) && sessions.size() < size) {
+                    sessions.add(session);
+                }
+            }
+            if (batch.size() < SCAN_BATCH) {
+                break;
+            }
+            SessionSummaryDto last = batch.get(batch.size() - 1);
+            position = new SessionCursor(last.getDate(), last.getId());
+        }
+        return sessions;
+    }
+
     public Session getById(Long id) {
         return this.sessionRepository.findById(id).orElse(null);
     }
 
+    public Session getDetailById(Long id) {
+        return this.sessionRepository.findWithUsersById(id).orElse(null);
+    }
+
+    /**
+     * Only the descriptive fields are updated: participants and the seat counter are owned by
+     * {@link #participate} and {@link #noLongerParticipate}. A capacity or duration left out keeps its
+     * current value, since the session form does not send them. The session row is locked before the participants
+     * are counted, so that no seat can be taken between the capacity check and the save.
+     */
+    @Transactional
     public Session update(Long id, Session session) {
-        session.setId(id);
-        return this.sessionRepository.save(session);
+        Session existing = this.sessionRepository.findForUpdateById(id).orElseThrow(NotFoundException::new);
+        if (session.getCapacity() != null && existing.getParticipantCount() > session.getCapacity()) {
+            throw new BadRequestException("Error: Capacity is lower than the number of participants!");
+        }
+
+        existing.setName(session.getName())
+                .setDate(session.getDate())
+                .setDescription(session.getDescription())
+                .setTeacher(session.getTeacher());
+        if (session.getCapacity() != null) {
+            existing.setCapacity(session.getCapacity());
+        }
+        if (session.getDuration() != null) {
+            existing.setDuration(session.getDuration());
+        }
+        checkTeacherAvailable(id, existing);
+
+        Session saved = this.sessionRepository.save(existing);
+        schedule(saved);
+        this.eventPublisher.publishEvent(SessionChangedEvent.saved(saved));
+        return saved;
+    }
+
+    /**
+     * Rejects a session that would give its teacher two classes at once. The teacher row is locked first, so that
+     * the teacher's sessions are checked and written one transaction at a time. The check itself is answered by the
+     * {@link TeacherScheduleIndex}; since it may still hold a slot whose transaction rolled back, a hit is confirmed
+     * on the database and stale slots are corrected from it.
+     */
+    private void checkTeacherAvailable(Long id, Session session) {
+        if (session.getTeacher() == null || session.getTeacher().getId() == null || session.getDate() == null) {
+            return;
+        }
+
+        Long teacherId = session.getTeacher().getId();
+        this.teacherRepository.findForUpdateById(teacherId);
+
+        long start = session.getDate().getTime();
+        long end = start + this.teacherScheduleIndex.lengthOf(session.getDuration());
+        List<Long> overlaps = this.teacherScheduleIndex.findOverlaps(teacherId, start, end, id);
+        if (overlaps.isEmpty()) {
+            return;
+        }
+
+        List<SessionRepository.Schedule> booked = this.sessionRepository.findTeacherSchedules(teacherId,
+                new Date(start - this.teacherScheduleIndex.lengthOf(Session.MAX_DURATION_MINUTES)), new Date(end));
+        for (SessionRepository.Schedule other : booked) {
+            long otherStart = other.getDate().getTime();
+            if (!other.getId().equals(id) && otherStart < end
+                    && otherStart + this.teacherScheduleIndex.lengthOf(other.getDuration()) > start) {
+                throw new BadRequestException("Error: Teacher already has a session at that time!");
+            }
+        }
+        this.teacherScheduleIndex.refresh(overlaps, booked);
+    }
+
+    /**
+     * Written right away rather than after commit, so that the next transaction let through the teacher lock
+     * already sees this slot.
+     */
+    private void schedule(Session session) {
+        this.teacherScheduleIndex.schedule(session.getId(), session.getTeacher() != null ? session.getTeacher().getId() : null,
+                session.getDate(), session.getDuration());
     }
 
+    /**
+     * The member's other sessions are checked in memory by the {@link MemberScheduleIndex} before anything is written.
+     * The seat is taken before the row is inserted so that the session row is locked first; the insert's
+     * foreign key check then never waits on it. Any failure rolls the seat and the booking back.
+     */
+    @Transactional
     public void participate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        User user = this.userRepository.findById(userId).orElse(null);
-        if (session == null || user == null) {
-            throw new NotFoundException();
+        if (this.memberScheduleIndex.book(userId, id).isPresent()) {
+            throw new BadRequestException("Error: User already has a session at that time!");
         }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(alreadyParticipate) {
+        if (this.sessionRepository.reserveSeat(id) == 0) {
+            if (!this.sessionRepository.existsById(id)) {
+                throw new NotFoundException();
+            }
+            throw new BadRequestException("Error: Session is full!");
+        }
+
+        try {
+            this.sessionRepository.addParticipant(id, userId);
+        } catch (DataIntegrityViolationException e) {
+            // Either the user foreign key (unknown user) or the primary key (already booked) was violated
+            if (!this.userRepository.existsById(userId)) {
+                throw new NotFoundException();
+            }
             throw new BadRequestException();
         }
+        this.eventPublisher.publishEvent(SessionChangedEvent.participants(id, Collections.singletonList(userId)));
+    }
 
-        session.getUsers().add(user);
+    @Transactional
+    public void noLongerParticipate(Long id, Long userId) {
+        if (this.sessionRepository.removeParticipant(id, userId) == 0) {
+            if (!this.sessionRepository.existsById(id)) {
+                throw new NotFoundException();
+            }
+            throw new BadRequestException();
+        }
 
-        this.sessionRepository.save(session);
+        this.sessionRepository.releaseSeat(id);
+        this.memberScheduleIndex.release(userId, id);
+        this.eventPublisher.publishEvent(SessionChangedEvent.participants(id, Collections.singletonList(userId)));
     }
 
-    public void noLongerParticipate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        if (session == null) {
+    /**
+     * Enrolls several users at once. The session row is locked first so that the seats left and the current
+     * participants cannot change until the batch is written.
+     */
+    @Transactional
+    public List<ParticipationResultDto> participateAll(Long id, List<Long> userIds) {
+        Session session = this.sessionRepository.findForUpdateById(id).orElseThrow(NotFoundException::new);
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(userIds));
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Set<Long> knownUsers = this.userRepository.findAllById(ids).stream().map(User::getId).collect(Collectors.toSet());
+        Set<Long> participants = this.sessionRepository.findParticipantIds(id, ids);
+        int seatsLeft = session.getCapacity() != null
+                ? session.getCapacity() - session.getParticipantCount()
+                : Integer.MAX_VALUE;
+
+        List<ParticipationResultDto> results = new ArrayList<>(ids.size());
+        List<Long> enrolled = new ArrayList<>();
+        for (Long userId : ids) {
+            Status status;
+            if (!knownUsers.contains(userId)) {
+                status = Status.NOT_FOUND;
+            } else if (participants.contains(userId)) {
+                status = Status.ALREADY_ENROLLED;
+            } else if (enrolled.size() >= seatsLeft) {
+                status = Status.FULL;
+            } else if (this.memberScheduleIndex.book(userId, id).isPresent()) {
+                status = Status.OVERLAPPING;
+            } else {
+                enrolled.add(userId);
+                status = Status.ENROLLED;
+            }
+            results.add(new ParticipationResultDto(userId, status));
+        }
+
+        if (!enrolled.isEmpty()) {
+            this.sessionRepository.addParticipants(id, enrolled);
+            this.sessionRepository.addSeats(id, enrolled.size());
+            this.eventPublisher.publishEvent(SessionChangedEvent.participants(id, enrolled));
+        }
+        return results;
+    }
+
+    @Transactional
+    public List<ParticipationResultDto> noLongerParticipateAll(Long id, List<Long> userIds) {
+        this.sessionRepository.findForUpdateById(id).orElseThrow(NotFoundException::new);
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(userIds));
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Set<Long> participants = this.sessionRepository.findParticipantIds(id, ids);
+
+        List<ParticipationResultDto> results = new ArrayList<>(ids.size());
+        List<Long> removed = new ArrayList<>();
+        for (Long userId : ids) {
+            if (participants.contains(userId)) {
+                removed.add(userId);
+                results.add(new ParticipationResultDto(userId, Status.REMOVED));
+            } else {
+                results.add(new ParticipationResultDto(userId, Status.NOT_ENROLLED));
+            }
+        }
+
+        if (!removed.isEmpty()) {
+            this.sessionRepository.removeParticipants(id, removed);
+            this.sessionRepository.addSeats(id, -removed.size());
+            removed.forEach(userId -> this.memberScheduleIndex.release(userId, id));
+            this.eventPublisher.publishEvent(SessionChangedEvent.participants(id, removed));
+        }
+        return results;
+    }
+
+    /**
+     * Enrolls one user in several sessions. Seats are taken with one batch of conditional updates, in session id
+     * order so that two concurrent batches always lock rows in the same order.
+     */
+    @Transactional
+    public List<ParticipationResultDto> participateInAll(Long userId, List<Long> sessionIds) {
+        if (!this.userRepository.existsById(userId)) {
             throw new NotFoundException();
         }
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(sessionIds));
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(!alreadyParticipate) {
-            throw new BadRequestException();
+        Set<Long> knownSessions = this.sessionRepository.findAllById(ids).stream().map(Session::getId).collect(Collectors.toSet());
+        Set<Long> participations = this.sessionRepository.findParticipationSessionIds(userId, ids);
+
+        // Booked in session id order: of two requested sessions at the same time, the first one wins
+        List<Long> sorted = new ArrayList<>(ids);
+        Collections.sort(sorted);
+        Set<Long> overlapping = new HashSet<>();
+        List<Long> candidates = new ArrayList<>();
+        for (Long id : sorted) {
+            if (!knownSessions.contains(id) || participations.contains(id)) {
+                continue;
+            }
+            if (this.memberScheduleIndex.book(userId, id).isPresent()) {
+                overlapping.add(id);
+            } else {
+                candidates.add(id);
+            }
+        }
+        Set<Long> enrolled = new LinkedHashSet<>();
+        if (!candidates.isEmpty()) {
+            boolean[] reserved = this.sessionRepository.reserveSeats(candidates);
+            for (int i = 0; i < reserved.length; i++) {
+                if (reserved[i]) {
+                    enrolled.add(candidates.get(i));
+                } else {
+                    this.memberScheduleIndex.cancel(userId, candidates.get(i));
+                }
+            }
         }
 
-        session.setUsers(session.getUsers().stream().filter(user -> !user.getId().equals(userId)).collect(Collectors.toList()));
+        if (!enrolled.isEmpty()) {
+            try {
+                this.sessionRepository.addParticipations(userId, new ArrayList<>(enrolled));
+            } catch (DataIntegrityViolationException e) {
+                // The user joined one of these sessions since the participations were read
+                throw new BadRequestException("Error: Participations changed concurrently, please retry!");
+            }
+            enrolled.forEach(sessionId -> this.eventPublisher.publishEvent(SessionChangedEvent.participants(sessionId, Collections.singletonList(userId))));
+        }
 
-        this.sessionRepository.save(session);
+        return ids.stream()
+                .map(id -> new ParticipationResultDto(id, !knownSessions.contains(id) ? Status.NOT_FOUND
+                        : participations.contains(id) ? Status.ALREADY_ENROLLED
+                        : overlapping.contains(id) ? Status.OVERLAPPING
+                        : enrolled.contains(id) ? Status.ENROLLED
+                        : Status.FULL))
+                .collect(Collectors.toList());
     }
 }
@@ -0,0 +1,56 @@
+package com.openclassrooms.starterjwt.services;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version stamps for session responses, used as ETags. Every committed {@link SessionChangedEvent} bumps a
+ * generation counter; the list follows the counter and each session remembers the generation of its last change.
+ * Stamps are prefixed with the startup time so that a restart never hands out a tag seen before.
+ * Counters only move after commit: a reader may pair fresh data with an old stamp, never the reverse. They move
+ * right after the response cache is cleared and before listeners that notify clients.
+ * A deleted session is forgotten. Sessions without a change of their own take the generation of the last deletion,
+ * so that the stamp of a deleted session is never handed out again.
+ */
+@Component
+public class SessionVersions {
+    private final long epoch = System.currentTimeMillis();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong lastDeletion = new AtomicLong();
+
+    private final ConcurrentHashMap<Long, Long> changedAt = new ConcurrentHashMap<>();
+
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSessionChanged(SessionChangedEvent event) {
+        long current = this.generation.incrementAndGet();
+        if (event.getType() == SessionChangedEvent.Type.DELETED) {
+            // Moved before the entry goes, so that no reader falls back to an older generation meanwhile
+            this.lastDeletion.accumulateAndGet(current, Math::max);
+            this.changedAt.remove(event.getSessionId());
+        } else {
+            this.changedAt.put(event.getSessionId(), current);
+        }
+    }
+
+    public String listVersion() {
+        return this.epoch + "-" + this.generation.get();
+    }
+
+    public int size() {
+        return this.changedAt.size();
+    }
+
+    public String version(Long id) {
+        // The entry is looked up first: once it is gone, the deletion generation is visible
+        Long changed = this.changedAt.get(id);
+        return this.epoch + "-" + (changed != null ? changed : this.lastDeletion.get()) + "-" + id;
+    }
+}
@@ -0,0 +1,187 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In-memory schedule of every teacher: the time slots of their sessions, ordered by start.
+ * Loaded once at startup, then written by {@link SessionService} as it plans sessions and kept in sync with committed
+ * {@link SessionChangedEvent}s. A slot planned by a transaction that rolls back is put back as it was.
+ * Each teacher also remembers its longest slot, so that an overlap lookup only visits the slots starting less than
+ * that length before the probed range: a few entries, found in O(log n).
+ * Lookups are lock-free; the rare writes are serialized.
+ */
+@Component
+public class TeacherScheduleIndex {
+    private static final long MINUTE_MS = 60_000L;
+
+    private final SessionRepository sessionRepository;
+
+    private final long defaultLengthMs;
+
+    private final ConcurrentHashMap<Long, Schedule> schedules = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<Long, Slot> slotsBySession = new ConcurrentHashMap<>();
+
+    public TeacherScheduleIndex(SessionRepository sessionRepository,
+                                @Value("${oc.app.session.defaultDurationMinutes:60}") int defaultDurationMinutes) {
+        this.sessionRepository = sessionRepository;
+        this.defaultLengthMs = defaultDurationMinutes * MINUTE_MS;
+    }
+
+    @PostConstruct
+    public void load() {
+        for (SessionRepository.Schedule schedule : this.sessionRepository.findAllSchedules()) {
+            put(schedule);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSessionChanged(SessionChangedEvent event) {
+        if (event.getType() == SessionChangedEvent.Type.SAVED) {
+            Session session = event.getSession();
+            put(session.getId(), session.getTeacher() != null ? session.getTeacher().getId() : null,
+                    session.getDate(), session.getDuration());
+        } else if (event.getType() == SessionChangedEvent.Type.DELETED) {
+            remove(event.getSessionId());
+        }
+    }
+
+    /**
+     * Length in milliseconds of a session lasting {@code duration} minutes, or the default duration if unknown.
+     */
+    public long lengthOf(Integer duration) {
+        return duration != null ? duration * MINUTE_MS : this.defaultLengthMs;
+    }
+
+    /**
+     * Ids of the teacher's sessions overlapping {@code [start, end)}, other than {@code excludedId}.
+     * Sessions that only touch the range, one ending when the other starts, do not overlap.
+     */
+    public List<Long> findOverlaps(Long teacherId, long start, long end, Long excludedId) {
+        List<Long> overlaps = new ArrayList<>();
+        Schedule schedule = this.schedules.get(teacherId);
+        if (schedule == null) {
+            return overlaps;
+        }
+
+        Slot from = new Slot(Long.MIN_VALUE, start - schedule.maxLengthMs, 0L, teacherId);
+        Slot to = new Slot(Long.MIN_VALUE, end, 0L, teacherId);
+        for (Slot slot : schedule.slots.subSet(from, false, to, false)) {
+            if (slot.end > start && !slot.sessionId.equals(excludedId)) {
+                overlaps.add(slot.sessionId);
+            }
+        }
+        return overlaps;
+    }
+
+    /**
+     * Plans the session while its transaction runs, so that the next session checked for the teacher already sees
+     * it. Should the transaction roll back, the session gets its previous slot back.
+     */
+    public void schedule(Long sessionId, Long teacherId, Date date, Integer duration) {
+        Slot previous = this.slotsBySession.get(sessionId);
+        put(sessionId, teacherId, date, duration);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        restore(sessionId, previous);
+                    }
+                }
+            });
+        }
+    }
+
+    public void put(SessionRepository.Schedule schedule) {
+        put(schedule.getId(), schedule.getTeacherId(), schedule.getDate(), schedule.getDuration());
+    }
+
+    public synchronized void put(Long sessionId, Long teacherId, Date date, Integer duration) {
+        remove(sessionId);
+        if (teacherId == null || date == null) {
+            return;
+        }
+
+        long length = lengthOf(duration);
+        Slot slot = new Slot(sessionId, date.getTime(), date.getTime() + length, teacherId);
+        Schedule schedule = this.schedules.computeIfAbsent(teacherId, id -> new Schedule());
+        // Only ever grows: a removed long slot merely widens later lookups a little
+        if (length > schedule.maxLengthMs) {
+            schedule.maxLengthMs = length;
+        }
+        schedule.slots.add(slot);
+        this.slotsBySession.put(sessionId, slot);
+    }
+
+    public synchronized void remove(Long sessionId) {
+        Slot slot = this.slotsBySession.remove(sessionId);
+        if (slot == null) {
+            return;
+        }
+
+        Schedule schedule = this.schedules.get(slot.teacherId);
+        if (schedule != null) {
+            schedule.slots.remove(slot);
+        }
+    }
+
+    private synchronized void restore(Long sessionId, Slot previous) {
+        remove(sessionId);
+        if (previous != null) {
+            this.schedules.computeIfAbsent(previous.teacherId, id -> new Schedule()).slots.add(previous);
+            this.slotsBySession.put(sessionId, previous);
+        }
+    }
+
+    /**
+     * Replaces the given sessions by what the database holds, for slots found stale.
+     */
+    public synchronized void refresh(Collection<Long> sessionIds, Collection<? extends SessionRepository.Schedule> schedules) {
+        sessionIds.forEach(this::remove);
+        schedules.forEach(this::put);
+    }
+
+    public int size() {
+        return this.slotsBySession.size();
+    }
+
+    private static final class Schedule {
+        private final ConcurrentSkipListSet<Slot> slots = new ConcurrentSkipListSet<>(
+                Comparator.comparingLong((Slot slot) -> slot.start).thenComparingLong(slot -> slot.sessionId));
+
+        private volatile long maxLengthMs;
+    }
+
+    private static final class Slot {
+        private final Long sessionId;
+
+        private final long start;
+
+        private final long end;
+
+        private final Long teacherId;
+
+        private Slot(Long sessionId, long start, long end, Long teacherId) {
+            this.sessionId = sessionId;
+            this.start = start;
+            this.end = end;
+            this.teacherId = teacherId;
+        }
+    }
+}
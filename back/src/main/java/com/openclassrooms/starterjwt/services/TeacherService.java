@@ -4,6 +4,9 @@ import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import org.springframework.stereotype.Service;
 
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Service
@@ -21,4 +24,30 @@ public class TeacherService {
     public Teacher findById(Long id) {
         return this.teacherRepository.findById(id).orElse(null);
     }
+
+    public List<Teacher> findAllById(Collection<Long> ids) {
+        return this.teacherRepository.findAllById(ids);
+    }
+
+    /**
+     * Teachers are only written outside the API, so the stamp is read from the table: the row count catches
+     * deletions, the latest {@code updated_at} catches inserts and updates.
+     */
+    public String listVersion() {
+        TeacherRepository.TableVersion version = this.teacherRepository.findTableVersion();
+        return version.getCount() + "-" + millis(version.getLastUpdate());
+    }
+
+    /**
+     * @return the stamp of one teacher, or {@code null} if it does not exist
+     */
+    public String version(Long id) {
+        return this.teacherRepository.findUpdatedAtById(id)
+                .map(updatedAt -> id + "-" + millis(updatedAt))
+                .orElse(null);
+    }
+
+    private static long millis(LocalDateTime dateTime) {
+        return dateTime != null ? Timestamp.valueOf(dateTime).getTime() : 0L;
+    }
 }
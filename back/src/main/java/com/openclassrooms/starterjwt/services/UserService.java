@@ -1,22 +1,64 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
 
 @Service
 public class UserService {
     private final UserRepository userRepository;
 
-    public UserService(UserRepository userRepository) {
+    private final UserDetailsCache userDetailsCache;
+
+    private final SessionService sessionService;
+
+    public UserService(UserRepository userRepository, UserDetailsCache userDetailsCache, SessionService sessionService) {
         this.userRepository = userRepository;
+        this.userDetailsCache = userDetailsCache;
+        this.sessionService = sessionService;
     }
 
+    /**
+     * Deletes the user and their participations without loading either; the participations go first, as
+     * PARTICIPATE references the user. The cached principal is evicted once the deletion is committed: evicted
+     * earlier, a request authenticating in between would load the user again from the uncommitted state.
+     */
+    @Transactional
     public void delete(Long id) {
-        this.userRepository.deleteById(id);
+        this.sessionService.removeAllParticipations(id);
+        if (this.userRepository.deleteUser(id) == 0) {
+            throw new NotFoundException();
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            this.userDetailsCache.evictById(id);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                userDetailsCache.evictById(id);
+            }
+        });
+    }
+
+    public String findEmailById(Long id) {
+        return this.userRepository.findEmailById(id).orElse(null);
     }
 
     public User findById(Long id) {
         return this.userRepository.findById(id).orElse(null);
     }
+
+    public List<User> findAllById(Collection<Long> ids) {
+        return this.userRepository.findAllById(ids);
+    }
 }
@@ -6,6 +6,7 @@ import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.payload.request.LoginRequest;
 import com.openclassrooms.starterjwt.payload.request.SignupRequest;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,7 +15,9 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import com.jayway.jsonpath.JsonPath;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -35,8 +38,13 @@ public class AuthControllerIT {
 	@Autowired
 	private UserRepository userRepository;
 
+	@Autowired
+	private UserDetailsCache userDetailsCache;
+
 	@AfterEach
 	public void tearDown() {
+		// Users are deleted straight through the repository, which the principal cache does not see
+		userDetailsCache.clear();
 		userRepository.deleteAll();
 	}
 
@@ -142,4 +150,43 @@ public class AuthControllerIT {
 						.content(objectMapper.writeValueAsString(loginRequest)))
 				.andExpect(status().isUnauthorized());
 	}
+
+	/**
+	 * Teste la déconnexion : le token révoqué ne doit plus donner accès à l'API.
+	 * Vérifie que la requête retourne un statut HTTP 200 puis 401 avec le même token.
+	 */
+	@Test
+	public void logout_ShouldRevokeToken() throws Exception {
+		userRepository.save(new User("john_doe@email.com", "Doe", "John", passwordEncoder.encode("password"), false));
+
+		LoginRequest loginRequest = new LoginRequest();
+		loginRequest.setEmail("john_doe@email.com");
+		loginRequest.setPassword("password");
+
+		String response = mockMvc.perform(post("/api/auth/login")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(objectMapper.writeValueAsString(loginRequest)))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		String token = JsonPath.read(response, "$.token");
+
+		mockMvc.perform(get("/api/teacher").header("Authorization", "Bearer " + token))
+				.andExpect(status().isOk());
+
+		mockMvc.perform(post("/api/auth/logout").header("Authorization", "Bearer " + token))
+				.andExpect(status().isOk());
+
+		mockMvc.perform(get("/api/teacher").header("Authorization", "Bearer " + token))
+				.andExpect(status().isUnauthorized());
+	}
+
+	/**
+	 * Teste la déconnexion sans token.
+	 * Vérifie que la requête retourne un statut HTTP 401 (Unauthorized).
+	 */
+	@Test
+	public void logout_ShouldReturnUnauthorized_WhenTokenIsMissing() throws Exception {
+		mockMvc.perform(post("/api/auth/logout"))
+				.andExpect(status().isUnauthorized());
+	}
 }
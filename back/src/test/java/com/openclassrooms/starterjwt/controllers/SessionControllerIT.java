@@ -8,18 +8,28 @@ import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.SessionResponseCache;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.security.test.context.support.WithMockUser;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.JsonPath;
 
+import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Optional;
+import java.util.Set;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -43,8 +53,13 @@ public class SessionControllerIT {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private SessionResponseCache sessionResponseCache;
+
     @AfterEach
     public void tearDown() {
+        // Rows are written straight through the repositories here, which the response cache does not see
+        sessionResponseCache.clear();
         sessionRepository.deleteAll();
         teacherRepository.deleteAll();
         userRepository.deleteAll();
@@ -58,7 +73,7 @@ public class SessionControllerIT {
     @WithMockUser(username = "authenticated_user@email.com")
     public void findById_ShouldReturnSession_WhenSessionExists() throws Exception {
         Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
-        Session session = sessionRepository.save(new Session(null, "Yoga Session", new Date(), "A relaxing yoga session", teacher, null, null, null));
+        Session session = sessionRepository.save(new Session(null, "Yoga Session", new Date(), 60, "A relaxing yoga session", teacher, null, null, null, null, 0));
 
         mockMvc.perform(get("/api/session/" + session.getId()))
                 .andExpect(status().isOk())
@@ -67,13 +82,15 @@ public class SessionControllerIT {
 
     /**
      * Teste la récupération d'une session qui n'existe pas.
-     * Doit renvoyer 404 Not Found.
+     * Doit renvoyer 404 Not Found avec le corps d'erreur commun.
      */
     @Test
     @WithMockUser(username = "authenticated_user@email.com")
     public void findById_ShouldReturnNotFound_WhenSessionDoesNotExist() throws Exception {
         mockMvc.perform(get("/api/session/1234"))
-                .andExpect(status().isNotFound());
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.status").value(404))
+                .andExpect(jsonPath("$.error").value("Not Found"));
     }
 
     /**
@@ -85,29 +102,156 @@ public class SessionControllerIT {
     public void findAll_ShouldReturnSessionsList() throws Exception {
         Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
 
-        sessionRepository.save(new Session(null, "Yoga Session", new Date(), "A relaxing yoga session", teacher, null, null, null));
-        sessionRepository.save(new Session(null, "Pilates Session", new Date(), "A pilates class", teacher, null, null, null));
+        sessionRepository.save(new Session(null, "Yoga Session", new Date(), 60, "A relaxing yoga session", teacher, null, null, null, null, 0));
+        sessionRepository.save(new Session(null, "Pilates Session", new Date(), 60, "A pilates class", teacher, null, null, null, null, 0));
 
         mockMvc.perform(get("/api/session"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.length()").value(2));
     }
 
+    /**
+     * Teste que la liste renvoie le nombre de participants sans leur détail.
+     * Doit renvoyer 200 OK avec le compteur de participants et sans la liste des utilisateurs.
+     */
+    @Test
+    @WithMockUser(username = "authenticated_user@email.com")
+    public void findAll_ShouldReturnParticipantCount_WithoutUsers() throws Exception {
+        Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
+        User user = userRepository.save(new User("john.doe@email.com", "Doe", "John", "password", false));
+
+        sessionRepository.save(new Session(null, "Yoga Session", new Date(), 60, "A relaxing yoga session", teacher, Set.of(user), null, null, null, 1));
+
+        mockMvc.perform(get("/api/session"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].participants").value(1))
+                .andExpect(jsonPath("$[0].teacher_id").value(teacher.getId()))
+                .andExpect(jsonPath("$[0].users").doesNotExist());
+    }
+
+    /**
+     * Teste la requête conditionnelle sur la liste des sessions.
+     * Doit renvoyer 304 Not Modified tant qu'aucune session n'est modifiée, puis 200 OK avec un nouvel ETag.
+     */
+    @Test
+    @WithMockUser(username = "authenticated_user@email.com")
+    public void findAll_ShouldReturnNotModified_UntilSessionsChange() throws Exception {
+        Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
+        String etag = mockMvc.perform(get("/api/session"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/session").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        createSession("Yoga Session", new Date(), "A relaxing yoga session", teacher);
+
+        String newEtag = mockMvc.perform(get("/api/session").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotEquals(etag, newEtag);
+
+        String detailUrl = "/api/session/" + sessionRepository.findAll().get(0).getId();
+        String detailEtag = mockMvc.perform(get(detailUrl))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get(detailUrl).header("If-None-Match", detailEtag))
+                .andExpect(status().isNotModified());
+    }
+
+    /**
+     * Teste la pagination par curseur des sessions à venir.
+     * Doit renvoyer les sessions futures par pages, dans l'ordre des dates, avec un curseur vers la page suivante.
+     */
+    @Test
+    @WithMockUser(username = "authenticated_user@email.com")
+    public void findAll_ShouldReturnUpcomingSessionsByPage_WhenLimitIsGiven() throws Exception {
+        Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
+        long now = System.currentTimeMillis();
+
+        sessionRepository.save(new Session(null, "Past Session", new Date(now - 86400000L), 60, "A past session", teacher, null, null, null, null, 0));
+        sessionRepository.save(new Session(null, "Third Session", new Date(now + 3 * 86400000L), 60, "A yoga session", teacher, null, null, null, null, 0));
+        sessionRepository.save(new Session(null, "First Session", new Date(now + 86400000L), 60, "A yoga session", teacher, null, null, null, null, 0));
+        sessionRepository.save(new Session(null, "Second Session", new Date(now + 2 * 86400000L), 60, "A yoga session", teacher, null, null, null, null, 0));
+
+        String response = mockMvc.perform(get("/api/session").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0].name").value("First Session"))
+                .andExpect(jsonPath("$.items[1].name").value("Second Session"))
+                .andExpect(jsonPath("$.next").isNotEmpty())
+                .andReturn().getResponse().getContentAsString();
+        String next = JsonPath.read(response, "$.next");
+
+        mockMvc.perform(get("/api/session").param("limit", "2").param("cursor", next))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].name").value("Third Session"))
+                .andExpect(jsonPath("$.next").doesNotExist());
+    }
+
+    /**
+     * Teste la pagination avec un curseur invalide.
+     * Doit renvoyer 400 Bad Request.
+     */
+    @Test
+    @WithMockUser(username = "authenticated_user@email.com")
+    public void findAll_ShouldReturnBadRequest_WhenCursorIsInvalid() throws Exception {
+        mockMvc.perform(get("/api/session").param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Teste la recherche de sessions par mots, enseignant et période.
+     * Doit renvoyer uniquement les sessions correspondant à tous les filtres.
+     */
+    @Test
+    @WithMockUser(username = "authenticated_user@email.com")
+    public void search_ShouldFilterByTextTeacherAndDate() throws Exception {
+        Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
+        Teacher other = teacherRepository.save(new Teacher(null, "Smith", "Jane", null, null));
+        long now = System.currentTimeMillis();
+
+        createSession("Yoga Vinyasa", new Date(now + 86400000L), "Un cours dynamique", teacher);
+        createSession("Yoga doux", new Date(now + 2 * 86400000L), "Un cours relaxant", other);
+        createSession("Pilates", new Date(now + 86400000L + 7200000L), "Renforcement", teacher);
+
+        mockMvc.perform(get("/api/session/search").param("q", "yoga"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2));
+
+        mockMvc.perform(get("/api/session/search").param("q", "yoga").param("teacherId", String.valueOf(teacher.getId())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].name").value("Yoga Vinyasa"));
+
+        mockMvc.perform(get("/api/session/search").param("teacherId", String.valueOf(teacher.getId()))
+                        .param("to", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX").format(new Date(now + 3 * 86400000L))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2));
+    }
+
     /**
      * Teste la suppression d'une session existante.
-     * Doit renvoyer 200 OK et supprimer la session.
+     * Doit renvoyer 200 OK et supprimer la session avec ses participations.
      */
     @Test
     @WithMockUser(username = "authenticated_user@email.com")
     public void delete_ShouldRemoveSession_WhenSessionExists() throws Exception {
         Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
-        Session session = sessionRepository.save(new Session(null, "Yoga Session", new Date(), "A yoga session", teacher, null, null, null));
+        User user = userRepository.save(new User("john.doe@email.com", "Doe", "John", "password", false));
+        Session session = sessionRepository.save(new Session(null, "Yoga Session", new Date(), 60, "A yoga session", teacher, Set.of(user), null, null, null, 1));
 
         mockMvc.perform(delete("/api/session/" + session.getId()))
                 .andExpect(status().isOk());
 
         Optional<Session> deletedSession = sessionRepository.findById(session.getId());
         assert (deletedSession.isEmpty());
+        // Its participations went with it, or the user could not be deleted
+        userRepository.deleteById(user.getId());
     }
 
     /**
@@ -118,7 +262,7 @@ public class SessionControllerIT {
     @WithMockUser(username = "authenticated_user@email.com")
     public void participate_ShouldReturnOk_WhenValid() throws Exception {
         Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
-        Session session = sessionRepository.save(new Session(null, "Yoga Session", new Date(), "A yoga session", teacher, null, null, null));
+        Session session = sessionRepository.save(new Session(null, "Yoga Session", new Date(), 60, "A yoga session", teacher, null, null, null, null, 0));
         User user = userRepository.save(new User("john.doe@email.com", "Doe", "John", "password", false));
 
         mockMvc.perform(post("/api/session/" + session.getId() + "/participate/" + user.getId()))
@@ -134,7 +278,7 @@ public class SessionControllerIT {
     public void noLongerParticipate_ShouldReturnOk_WhenValid() throws Exception {
         Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
 
-        Session session = sessionRepository.save(new Session(null, "Yoga Session", new Date(), "A yoga session", teacher, null, null, null));
+        Session session = sessionRepository.save(new Session(null, "Yoga Session", new Date(), 60, "A yoga session", teacher, null, null, null, null, 0));
 
         User user = userRepository.save(new User("john.doe@email.com", "Doe", "John", "password", false));
 
@@ -146,6 +290,121 @@ public class SessionControllerIT {
                 .andExpect(status().isOk());
     }
 
+    /**
+     * Teste l'inscription groupée de plusieurs utilisateurs à une session.
+     * Doit renvoyer un résultat par utilisateur et respecter la capacité de la session.
+     */
+    @Test
+    @WithMockUser(username = "authenticated_user@email.com")
+    public void participateAll_ShouldReturnResultPerUser() throws Exception {
+        Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
+        Session session = sessionRepository.save(new Session(null, "Yoga Session", new Date(), 60, "A yoga session", teacher, null, null, null, 2, 0));
+        User first = userRepository.save(new User("first@email.com", "First", "Yoga", "password", false));
+        User second = userRepository.save(new User("second@email.com", "Second", "Yoga", "password", false));
+        User third = userRepository.save(new User("third@email.com", "Third", "Yoga", "password", false));
+
+        mockMvc.perform(post("/api/session/" + session.getId() + "/participate/" + first.getId()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/session/" + session.getId() + "/participate")
+                        .contentType("application/json")
+                        .content("{\"ids\":[" + first.getId() + "," + second.getId() + "," + third.getId() + ",99999]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("ALREADY_ENROLLED"))
+                .andExpect(jsonPath("$[1].status").value("ENROLLED"))
+                .andExpect(jsonPath("$[2].status").value("FULL"))
+                .andExpect(jsonPath("$[3].status").value("NOT_FOUND"));
+
+        mockMvc.perform(get("/api/session/" + session.getId()))
+                .andExpect(jsonPath("$.users.length()").value(2));
+
+        mockMvc.perform(delete("/api/session/" + session.getId() + "/participate")
+                        .contentType("application/json")
+                        .content("{\"ids\":[" + first.getId() + "," + third.getId() + "]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("REMOVED"))
+                .andExpect(jsonPath("$[1].status").value("NOT_ENROLLED"));
+
+        assertEquals(1, sessionRepository.findById(session.getId()).orElseThrow().getParticipantCount());
+    }
+
+    /**
+     * Teste l'inscription d'un utilisateur à plusieurs sessions en un seul appel.
+     * Doit renvoyer un résultat par session, et refuser une session sur le même créneau qu'une autre.
+     */
+    @Test
+    @WithMockUser(username = "authenticated_user@email.com")
+    public void participateInAll_ShouldReturnResultPerSession() throws Exception {
+        Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
+        Teacher other = teacherRepository.save(new Teacher(null, "Smith", "Jane", null, null));
+        Date now = new Date();
+        Session open = sessionRepository.save(new Session(null, "Open Session", now, 60, "A yoga session", teacher, null, null, null, null, 0));
+        Session full = sessionRepository.save(new Session(null, "Full Session", new Date(now.getTime() + 7200000L), 60, "A yoga session", teacher, null, null, null, 1, 0));
+        Session clash = sessionRepository.save(new Session(null, "Clashing Session", now, 60, "A yoga session", other, null, null, null, null, 0));
+        User member = userRepository.save(new User("member@email.com", "Member", "Yoga", "password", false));
+        User user = userRepository.save(new User("john.doe@email.com", "Doe", "John", "password", false));
+
+        mockMvc.perform(post("/api/session/" + full.getId() + "/participate/" + member.getId()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/session/participate/" + user.getId())
+                        .contentType("application/json")
+                        .content("{\"ids\":[" + open.getId() + "," + full.getId() + "," + clash.getId() + ",99999]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("ENROLLED"))
+                .andExpect(jsonPath("$[1].status").value("FULL"))
+                .andExpect(jsonPath("$[2].status").value("OVERLAPPING"))
+                .andExpect(jsonPath("$[3].status").value("NOT_FOUND"));
+
+        assertEquals(1, sessionRepository.findById(open.getId()).orElseThrow().getParticipantCount());
+        assertEquals(0, sessionRepository.findById(clash.getId()).orElseThrow().getParticipantCount());
+    }
+
+    /**
+     * Teste l'inscription d'un utilisateur à deux sessions qui se chevauchent.
+     * Doit renvoyer 400 Bad Request pour la seconde, qui reste sans participant.
+     */
+    @Test
+    @WithMockUser(username = "authenticated_user@email.com")
+    public void participate_ShouldReturnBadRequest_WhenUserHasOverlappingSession() throws Exception {
+        Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
+        Teacher other = teacherRepository.save(new Teacher(null, "Smith", "Jane", null, null));
+        Date now = new Date();
+        Session first = sessionRepository.save(new Session(null, "Yoga Session", now, 60, "A yoga session", teacher, null, null, null, null, 0));
+        Session second = sessionRepository.save(new Session(null, "Pilates Session", new Date(now.getTime() + 1800000L), 60, "A pilates session", other, null, null, null, null, 0));
+        User user = userRepository.save(new User("john.doe@email.com", "Doe", "John", "password", false));
+
+        mockMvc.perform(post("/api/session/" + first.getId() + "/participate/" + user.getId()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/session/" + second.getId() + "/participate/" + user.getId()))
+                .andExpect(status().isBadRequest());
+
+        assertEquals(0, sessionRepository.findById(second.getId()).orElseThrow().getParticipantCount());
+    }
+
+    /**
+     * Teste une double inscription du même utilisateur à une session.
+     * Doit renvoyer 400 Bad Request sans dupliquer la participation.
+     */
+    @Test
+    @WithMockUser(username = "authenticated_user@email.com")
+    public void participate_ShouldReturnBadRequest_WhenUserAlreadyParticipates() throws Exception {
+        Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
+        Session session = sessionRepository.save(new Session(null, "Yoga Session", new Date(), 60, "A yoga session", teacher, null, null, null, null, 0));
+        User user = userRepository.save(new User("john.doe@email.com", "Doe", "John", "password", false));
+
+        mockMvc.perform(post("/api/session/" + session.getId() + "/participate/" + user.getId()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/session/" + session.getId() + "/participate/" + user.getId()))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/api/session/" + session.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users.length()").value(1));
+    }
+
 
     /**
      * Teste la création d'une nouvelle session.
@@ -160,10 +419,12 @@ public class SessionControllerIT {
                 null,
                 "New Session",
                 new Date(),
+                60,
                 teacher.getId(),
                 "A new session description",
                 null,
                 null,
+                null,
                 null
         );
 
@@ -175,6 +436,25 @@ public class SessionControllerIT {
     }
 
 
+    /**
+     * Teste la création d'une session qui chevauche une autre session du même professeur.
+     * Doit renvoyer 400 Bad Request, sauf si la session commence à la fin de la précédente.
+     */
+    @Test
+    @WithMockUser(username = "authenticated_user@email.com")
+    public void create_ShouldReturnBadRequest_WhenTeacherIsAlreadyBooked() throws Exception {
+        Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
+        long start = System.currentTimeMillis() + 86400000L;
+        createSession("Yoga Session", new Date(start), "A relaxing yoga session", teacher);
+
+        mockMvc.perform(post("/api/session")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(new SessionDto(null, "Pilates Session", new Date(start + 1800000L), 60, teacher.getId(), "A pilates class", null, null, null, null))))
+                .andExpect(status().isBadRequest());
+
+        createSession("Pilates Session", new Date(start + 3600000L), "A pilates class", teacher);
+    }
+
     /**
      * Teste la mise à jour d'une session existante.
      * Doit renvoyer 200 OK avec les nouvelles informations mises à jour.
@@ -183,16 +463,18 @@ public class SessionControllerIT {
     @WithMockUser(username = "authenticated_user@email.com")
     public void update_ShouldReturnUpdatedSession_WhenValid() throws Exception {
         Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
-        Session session = sessionRepository.save(new Session(null, "Yoga Session", new Date(), "A yoga session", teacher, null, null, null));
+        Session session = sessionRepository.save(new Session(null, "Yoga Session", new Date(), 60, "A yoga session", teacher, null, null, null, null, 0));
 
         SessionDto updatedSession = new SessionDto(
                 session.getId(),
                 "Updated Session",
                 new Date(),
+                60,
                 teacher.getId(),
                 "Updated description",
                 null,
                 null,
+                null,
                 null
         );
 
@@ -227,9 +509,10 @@ public class SessionControllerIT {
                 null,
                 "Updated Session",
                 new Date(),
+                60,
                 teacher.getId(),
                 "Updated description",
-                null, null, null
+                null, null, null, null
         );
 
         mockMvc.perform(put("/api/session/invalid-id")
@@ -268,7 +551,7 @@ public class SessionControllerIT {
     @WithMockUser
     public void participate_ShouldReturnNotFound_WhenUserDoesNotExist() throws Exception {
         Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
-        Session session = sessionRepository.save(new Session(null, "Yoga Session", new Date(), "A yoga session", teacher, null, null, null));
+        Session session = sessionRepository.save(new Session(null, "Yoga Session", new Date(), 60, "A yoga session", teacher, null, null, null, null, 0));
 
         mockMvc.perform(post("/api/session/" + session.getId() + "/participate/12391"))
                 .andExpect(status().isNotFound());
@@ -296,5 +579,95 @@ public class SessionControllerIT {
                 .andExpect(status().isBadRequest());
     }
 
+    /**
+     * Teste le flux d'événements des sessions.
+     * Doit pousser un événement "created" avec l'identifiant de la session créée.
+     */
+    @Test
+    @WithMockUser(username = "authenticated_user@email.com")
+    public void events_ShouldPushCreatedSession() throws Exception {
+        Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
+        MvcResult result = mockMvc.perform(get("/api/session/events"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        createSession("Yoga Session", new Date(), "A relaxing yoga session", teacher);
+
+        Long id = sessionRepository.findAll().get(0).getId();
+        String expected = "event: created\ndata: {\"type\":\"created\",\"id\":" + id + "}\n\n";
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!result.getResponse().getContentAsString().contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(result.getResponse().getContentAsString().contains(expected));
+    }
+
+    /**
+     * Teste l'export NDJSON des sessions par un administrateur.
+     * Doit renvoyer une ligne JSON par session avec les identifiants des participants.
+     */
+    @Test
+    public void export_ShouldStreamSessionsAsNdjson_WhenUserIsAdmin() throws Exception {
+        Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
+        User user = userRepository.save(new User("john.doe@email.com", "Doe", "John", "password", false));
+        Session yoga = sessionRepository.save(new Session(null, "Yoga Session", new Date(), 60, "A relaxing yoga session", teacher, Set.of(user), null, null, null, 1));
+        Session pilates = sessionRepository.save(new Session(null, "Pilates Session", new Date(), 60, "A pilates class", teacher, null, null, null, null, 0));
+        UserDetailsImpl admin = UserDetailsImpl.builder().id(1L).username("admin@email.com").admin(true).build();
 
+        MvcResult result = mockMvc.perform(get("/api/session/export").with(user(admin)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(yoga.getId().intValue(), (int) JsonPath.read(lines[0], "$.id"));
+        assertEquals(user.getId().intValue(), (int) JsonPath.read(lines[0], "$.users[0]"));
+        assertEquals(pilates.getId().intValue(), (int) JsonPath.read(lines[1], "$.id"));
+        assertEquals(0, (int) JsonPath.read(lines[1], "$.users.length()"));
+    }
+
+    /**
+     * Teste l'export CSV des sessions par un administrateur.
+     * Une cellule commençant comme une formule doit être préfixée d'une apostrophe et mise entre guillemets.
+     */
+    @Test
+    public void export_ShouldNeutralizeFormulas_WhenFormatIsCsv() throws Exception {
+        Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
+        Session session = sessionRepository.save(new Session(null, "=HYPERLINK(\"http://evil\")", new Date(0), 60, "@SUM(A1)", teacher, null, null, null, null, 0));
+        UserDetailsImpl admin = UserDetailsImpl.builder().id(1L).username("admin@email.com").admin(true).build();
+
+        MvcResult result = mockMvc.perform(get("/api/session/export").param("format", "csv").with(user(admin)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\r\n");
+        assertEquals(2, lines.length);
+        assertEquals(session.getId() + ",\"'=HYPERLINK(\"\"http://evil\"\")\",1970-01-01T00:00:00Z," + teacher.getId()
+                + ",\"'@SUM(A1)\",,", lines[1]);
+    }
+
+    /**
+     * Teste que l'export est refusé à un utilisateur qui n'est pas administrateur.
+     * Doit renvoyer 401 Unauthorized.
+     */
+    @Test
+    @WithMockUser(username = "authenticated_user@email.com")
+    public void export_ShouldReturnUnauthorized_WhenUserIsNotAdmin() throws Exception {
+        mockMvc.perform(get("/api/session/export"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private void createSession(String name, Date date, String description, Teacher teacher) throws Exception {
+        mockMvc.perform(post("/api/session")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(new SessionDto(null, name, date, 60, teacher.getId(), description, null, null, null, null))))
+                .andExpect(status().isOk());
+    }
 }
@@ -98,4 +98,30 @@ public class TeacherControllerIT {
 				.andExpect(status().isOk())
 				.andExpect(jsonPath("$.length()").value(0));
 	}
+
+	/**
+	 * Teste la requête conditionnelle sur la liste des enseignants.
+	 * Doit renvoyer 304 Not Modified tant que la table ne change pas, puis 200 OK.
+	 */
+	@Test
+	@WithMockUser(username = "authenticated_user@email.com")
+	public void findAll_ShouldReturnNotModified_UntilTeachersChange() throws Exception {
+		Teacher teacher = teacherRepository.save(Teacher.builder().firstName("Jane").lastName("Doe").build());
+		String etag = mockMvc.perform(get("/api/teacher"))
+				.andExpect(status().isOk())
+				.andExpect(header().exists("ETag"))
+				.andReturn().getResponse().getHeader("ETag");
+
+		mockMvc.perform(get("/api/teacher").header("If-None-Match", etag))
+				.andExpect(status().isNotModified());
+		mockMvc.perform(get("/api/teacher/" + teacher.getId()))
+				.andExpect(status().isOk())
+				.andExpect(header().exists("ETag"));
+
+		teacherRepository.save(Teacher.builder().firstName("John").lastName("Doe").build());
+
+		mockMvc.perform(get("/api/teacher").header("If-None-Match", etag))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(2));
+	}
 }
@@ -1,8 +1,15 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import com.jayway.jsonpath.JsonPath;
 import com.openclassrooms.starterjwt.annotations.IT;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.services.CalendarFeedService;
+import com.openclassrooms.starterjwt.services.SessionService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -10,6 +17,14 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.util.Date;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.anonymous;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -24,6 +39,18 @@ public class UserControllerIT {
 	@Autowired
 	private UserRepository userRepository;
 
+	@Autowired
+	private SessionRepository sessionRepository;
+
+	@Autowired
+	private TeacherRepository teacherRepository;
+
+	@Autowired
+	private SessionService sessionService;
+
+	@Autowired
+	private CalendarFeedService calendarFeedService;
+
 
 	/**
 	 * Teste la récupération d'un utilisateur par son ID.
@@ -79,6 +106,30 @@ public class UserControllerIT {
 				.andExpect(status().isOk());
 	}
 
+	/**
+	 * Teste la suppression d'un utilisateur inscrit à une session.
+	 * Doit renvoyer 200 OK, retirer ses participations et libérer sa place.
+	 */
+	@Test
+	@WithMockUser(username = "jim.doe@email.com")
+	public void deleteUser_ShouldRemoveParticipations_WhenUserBookedSessions() throws Exception {
+		User user = userRepository.save(new User("jim.doe@email.com", "Doe", "Jim", "password", false));
+		Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
+		Session session = sessionRepository.save(new Session(null, "Yoga Session", new Date(), 60, "A yoga session", teacher, Set.of(user), null, null, null, 1));
+
+		try {
+			mockMvc.perform(delete("/api/user/" + user.getId()))
+					.andExpect(status().isOk());
+
+			assertTrue(userRepository.findById(user.getId()).isEmpty());
+			assertEquals(0, sessionRepository.findById(session.getId()).orElseThrow().getParticipantCount());
+			assertTrue(sessionRepository.findWithUsersById(session.getId()).orElseThrow().getUsers().isEmpty());
+		} finally {
+			sessionRepository.deleteAll();
+			teacherRepository.deleteAll();
+		}
+	}
+
 	/**
 	 * Teste la suppression d'un utilisateur lorsqu'un autre utilisateur tente de le supprimer.
 	 * Doit renvoyer 401 Unauthorized.
@@ -115,4 +166,171 @@ public class UserControllerIT {
 				.andExpect(status().isNotFound());
 	}
 
+	/**
+	 * Teste la liste paginée des sessions réservées par l'utilisateur.
+	 * Doit renvoyer ses seules sessions à venir dans l'ordre chronologique, puis ses sessions passées avec past=true.
+	 */
+	@Test
+	@WithMockUser(username = "jack.doe@email.com")
+	public void findSessions_ShouldReturnBookedSessionsOnly() throws Exception {
+		User user = userRepository.save(new User("jack.doe@email.com", "Doe", "Jack", "password", false));
+		Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
+		long now = System.currentTimeMillis();
+		sessionRepository.save(new Session(null, "Past Session", new Date(now - 86400000L), 60, "A past session", teacher, Set.of(user), null, null, null, 1));
+		sessionRepository.save(new Session(null, "Second Session", new Date(now + 2 * 86400000L), 60, "A yoga session", teacher, Set.of(user), null, null, null, 1));
+		sessionRepository.save(new Session(null, "First Session", new Date(now + 86400000L), 60, "A yoga session", teacher, Set.of(user), null, null, null, 1));
+		sessionRepository.save(new Session(null, "Other Session", new Date(now + 86400000L), 60, "Not booked", teacher, null, null, null, null, 0));
+
+		try {
+			String response = mockMvc.perform(get("/api/user/" + user.getId() + "/sessions").param("limit", "1"))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$.items.length()").value(1))
+					.andExpect(jsonPath("$.items[0].name").value("First Session"))
+					.andExpect(jsonPath("$.next").isNotEmpty())
+					.andReturn().getResponse().getContentAsString();
+			String next = JsonPath.read(response, "$.next");
+
+			mockMvc.perform(get("/api/user/" + user.getId() + "/sessions").param("limit", "1").param("cursor", next))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$.items[0].name").value("Second Session"))
+					.andExpect(jsonPath("$.next").doesNotExist());
+
+			mockMvc.perform(get("/api/user/" + user.getId() + "/sessions").param("past", "true"))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$.items.length()").value(1))
+					.andExpect(jsonPath("$.items[0].name").value("Past Session"))
+					.andExpect(jsonPath("$.items[0].participants").value(1));
+		} finally {
+			sessionRepository.deleteAll();
+			teacherRepository.deleteAll();
+		}
+	}
+
+	/**
+	 * Teste qu'une session réservée sans professeur est renvoyée sans identifiant de professeur,
+	 * et non avec un identifiant 0.
+	 */
+	@Test
+	@WithMockUser(username = "jill.doe@email.com")
+	public void findSessions_ShouldReturnNoTeacher_WhenSessionHasNone() throws Exception {
+		User user = userRepository.save(new User("jill.doe@email.com", "Doe", "Jill", "password", false));
+		sessionRepository.save(new Session(null, "Free Session", new Date(System.currentTimeMillis() + 86400000L), 60, "No teacher yet", null, Set.of(user), null, null, null, 1));
+
+		try {
+			mockMvc.perform(get("/api/user/" + user.getId() + "/sessions"))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$.items.length()").value(1))
+					.andExpect(jsonPath("$.items[0].name").value("Free Session"))
+					.andExpect(jsonPath("$.items[0].teacher_id").doesNotExist());
+		} finally {
+			sessionRepository.deleteAll();
+		}
+	}
+
+	/**
+	 * Teste le flux iCalendar des sessions réservées par l'utilisateur.
+	 * Doit renvoyer 304 Not Modified tant que ses réservations ne changent pas, puis le nouveau flux.
+	 */
+	@Test
+	@WithMockUser(username = "jane.doe@email.com")
+	public void calendar_ShouldReturnNotModified_UntilParticipationsChange() throws Exception {
+		User user = userRepository.save(new User("jane.doe@email.com", "Doe", "Jane", "password", false));
+		Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
+		Session session = sessionRepository.save(new Session(null, "Yoga Session", new Date(), 60, "A relaxing yoga session", teacher, Set.of(user), null, null, null, 1));
+		calendarFeedService.clear();
+
+		try {
+			String etag = mockMvc.perform(get("/api/user/" + user.getId() + "/calendar.ics"))
+					.andExpect(status().isOk())
+					.andExpect(content().contentTypeCompatibleWith("text/calendar"))
+					.andExpect(header().exists("Last-Modified"))
+					.andExpect(content().string(containsString("UID:session-" + session.getId() + "@yoga-app")))
+					.andExpect(content().string(containsString("SUMMARY:Yoga Session")))
+					.andReturn().getResponse().getHeader("ETag");
+
+			mockMvc.perform(get("/api/user/" + user.getId() + "/calendar.ics").header("If-None-Match", etag))
+					.andExpect(status().isNotModified());
+
+			sessionService.noLongerParticipate(session.getId(), user.getId());
+
+			mockMvc.perform(get("/api/user/" + user.getId() + "/calendar.ics").header("If-None-Match", etag))
+					.andExpect(status().isOk())
+					.andExpect(content().string(not(containsString("BEGIN:VEVENT"))));
+		} finally {
+			sessionRepository.deleteAll();
+			teacherRepository.deleteAll();
+		}
+	}
+
+	/**
+	 * Teste le flux iCalendar d'un autre utilisateur.
+	 * Doit renvoyer 401 Unauthorized.
+	 */
+	@Test
+	@WithMockUser(username = "another.user@email.com")
+	public void calendar_ShouldReturnUnauthorized_WhenNotOwner() throws Exception {
+		User user = userRepository.save(new User("jane.roe@email.com", "Roe", "Jane", "password", false));
+
+		mockMvc.perform(get("/api/user/" + user.getId() + "/calendar.ics"))
+				.andExpect(status().isUnauthorized());
+	}
+
+	/**
+	 * Teste l'abonnement d'une application de calendrier par URL secrète, sans jeton d'authentification.
+	 * Doit servir le flux tant que l'URL n'est pas révoquée, puis renvoyer 404 Not Found.
+	 */
+	@Test
+	@WithMockUser(username = "jane.feed@email.com")
+	public void calendarToken_ShouldServeFeedAnonymously_UntilRevoked() throws Exception {
+		User user = userRepository.save(new User("jane.feed@email.com", "Doe", "Jane", "password", false));
+		Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
+		Session session = sessionRepository.save(new Session(null, "Yoga Session", new Date(), 60, "A relaxing yoga session", teacher, Set.of(user), null, null, null, 1));
+		calendarFeedService.clear();
+
+		try {
+			String url = JsonPath.read(mockMvc.perform(post("/api/user/" + user.getId() + "/calendar-token"))
+					.andExpect(status().isOk())
+					.andReturn().getResponse().getContentAsString(), "$.url");
+			String path = url.substring(url.indexOf("/api/calendar/"));
+
+			mockMvc.perform(get(path).with(anonymous()))
+					.andExpect(status().isOk())
+					.andExpect(content().contentTypeCompatibleWith("text/calendar"))
+					.andExpect(content().string(containsString("UID:session-" + session.getId() + "@yoga-app")));
+
+			mockMvc.perform(delete("/api/user/" + user.getId() + "/calendar-token"))
+					.andExpect(status().isOk());
+
+			mockMvc.perform(get(path).with(anonymous()))
+					.andExpect(status().isNotFound());
+		} finally {
+			sessionRepository.deleteAll();
+			teacherRepository.deleteAll();
+			userRepository.delete(user);
+		}
+	}
+
+	/**
+	 * Teste l'émission d'une URL de flux pour un autre utilisateur.
+	 * Doit renvoyer 401 Unauthorized.
+	 */
+	@Test
+	@WithMockUser(username = "another.user@email.com")
+	public void calendarToken_ShouldReturnUnauthorized_WhenNotOwner() throws Exception {
+		User user = userRepository.save(new User("john.roe@email.com", "Roe", "John", "password", false));
+
+		mockMvc.perform(post("/api/user/" + user.getId() + "/calendar-token"))
+				.andExpect(status().isUnauthorized());
+	}
+
+	/**
+	 * Teste un flux de calendrier demandé avec une URL inconnue.
+	 * Doit renvoyer 404 Not Found.
+	 */
+	@Test
+	public void calendarFeed_ShouldReturnNotFound_WhenTokenUnknown() throws Exception {
+		mockMvc.perform(get("/api/calendar/unknown.ics"))
+				.andExpect(status().isNotFound());
+	}
+
 }
@@ -0,0 +1,72 @@
+package com.openclassrooms.starterjwt.mapper;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.services.TeacherService;
+import com.openclassrooms.starterjwt.services.UserService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SessionMapperTest {
+
+	@Mock
+	private TeacherService teacherService;
+
+	@Mock
+	private UserService userService;
+
+	@InjectMocks
+	private SessionMapperImpl sessionMapper;
+
+	/**
+	 * Teste que les enseignants et les utilisateurs de toute la liste sont chargés en une requête chacun.
+	 */
+	@Test
+	void toEntity_shouldResolveReferencesInBulk() {
+		Teacher teacher = new Teacher().setId(1L);
+		User first = new User().setId(10L);
+		User second = new User().setId(11L);
+		when(teacherService.findAllById(Set.of(1L))).thenReturn(List.of(teacher));
+		when(userService.findAllById(Set.of(10L, 11L))).thenReturn(List.of(first, second));
+
+		List<Session> sessions = sessionMapper.toEntity(List.of(
+				new SessionDto(null, "Yoga", new Date(), 60, 1L, "Un cours", List.of(10L, 11L), null, null, null),
+				new SessionDto(null, "Pilates", new Date(), 60, 1L, "Un cours", List.of(11L), null, null, null)));
+
+		assertSame(teacher, sessions.get(0).getTeacher());
+		assertEquals(Set.of(first, second), sessions.get(0).getUsers());
+		assertEquals(Set.of(second), sessions.get(1).getUsers());
+		verify(teacherService, times(1)).findAllById(any());
+		verify(userService, times(1)).findAllById(any());
+		verify(userService, never()).findById(any());
+	}
+
+	/**
+	 * Teste qu'un identifiant d'utilisateur inconnu est signalé au lieu d'être ignoré.
+	 */
+	@Test
+	void toEntity_shouldRejectUnknownUsers() {
+		when(teacherService.findAllById(Set.of(1L))).thenReturn(List.of(new Teacher().setId(1L)));
+		when(userService.findAllById(Set.of(10L, 99L))).thenReturn(List.of(new User().setId(10L)));
+		SessionDto sessionDto = new SessionDto(null, "Yoga", new Date(), 60, 1L, "Un cours", List.of(10L, 99L), null, null, null);
+
+		BadRequestException exception = assertThrows(BadRequestException.class, () -> sessionMapper.toEntity(sessionDto));
+
+		assertEquals("Error: Unknown users [99]!", exception.getMessage());
+	}
+}
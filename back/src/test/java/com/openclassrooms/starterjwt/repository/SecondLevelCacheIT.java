@@ -0,0 +1,112 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.annotations.IT;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.services.SessionService;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@IT
+@ActiveProfiles("test")
+public class SecondLevelCacheIT {
+
+    private static final String PARTICIPANTS = Session.class.getName() + ".users";
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    public void tearDown() {
+        sessionRepository.deleteAll();
+        teacherRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    /**
+     * Teste qu'un enseignant relu dans une nouvelle transaction est servi par le cache de second niveau.
+     */
+    @Test
+    public void findById_ShouldHitCache_WhenTeacherWasAlreadyLoaded() {
+        Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
+        teacherRepository.findById(teacher.getId());
+        long hits = regionStatistics(SecondLevelCacheConfig.TEACHERS).getHitCount();
+
+        teacherRepository.findById(teacher.getId());
+
+        assertEquals(hits + 1, regionStatistics(SecondLevelCacheConfig.TEACHERS).getHitCount());
+    }
+
+    /**
+     * Teste que les inscriptions écrites en JDBC invalident la collection des participants mise en cache.
+     */
+    @Test
+    public void participateAll_ShouldInvalidateCachedParticipants() {
+        Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
+        User first = userRepository.save(new User("first@email.com", "Doe", "Jane", "password", false));
+        User second = userRepository.save(new User("second@email.com", "Doe", "John", "password", false));
+        Session session = sessionRepository.save(new Session(null, "Yoga Session", new Date(), 60, "A relaxing yoga session", teacher, Set.of(first), null, null, null, 1));
+        assertEquals(1, participantCount(session.getId()));
+
+        sessionService.participateAll(session.getId(), List.of(second.getId()));
+
+        assertEquals(2, participantCount(session.getId()));
+    }
+
+    /**
+     * Teste qu'une inscription n'évince du cache que les participants de la session concernée.
+     */
+    @Test
+    public void participate_ShouldKeepOtherCachedParticipants() {
+        Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
+        User user = userRepository.save(new User("user@email.com", "Doe", "Jane", "password", false));
+        Session booked = sessionRepository.save(new Session(null, "Yoga Session", new Date(0), 60, "A relaxing yoga session", teacher, Set.of(), null, null, null, 0));
+        Session other = sessionRepository.save(new Session(null, "Pilates Session", new Date(), 60, "A pilates session", teacher, Set.of(), null, null, null, 0));
+        participantCount(booked.getId());
+        participantCount(other.getId());
+
+        sessionService.participate(booked.getId(), user.getId());
+
+        Cache cache = entityManagerFactory.getCache().unwrap(Cache.class);
+        assertFalse(cache.containsCollection(PARTICIPANTS, booked.getId()));
+        assertTrue(cache.containsCollection(PARTICIPANTS, other.getId()));
+        assertEquals(1, participantCount(booked.getId()));
+    }
+
+    private int participantCount(Long sessionId) {
+        return transactionTemplate.execute(status -> sessionRepository.findById(sessionId).orElseThrow().getUsers().size());
+    }
+
+    private CacheRegionStatistics regionStatistics(String region) {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics().getDomainDataRegionStatistics(region);
+    }
+}
@@ -1,11 +1,15 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -42,4 +46,35 @@ class AuthEntryPointJwtTest {
 
 		verify(response).setContentType("application/json");
 	}
+
+	/**
+	 * Teste que le corps écrit est un JSON valide, avec le message et le chemin échappés.
+	 */
+	@Test
+	void commence_ShouldWriteEscapedErrorBody() throws IOException, ServletException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setWriteListener(WriteListener writeListener) {
+			}
+
+			@Override
+			public void write(int b) {
+				body.write(b);
+			}
+		});
+		when(request.getServletPath()).thenReturn("/api/session");
+		when(authException.getMessage()).thenReturn("Bad \"token\"");
+
+		authEntryPointJwt.commence(request, response, authException);
+
+		String json = body.toString(StandardCharsets.UTF_8);
+		assertEquals("{\"status\":401,\"error\":\"Unauthorized\",\"message\":\"Bad \\\"token\\\"\",\"path\":\"/api/session\"}", json);
+		verify(response).setContentLength(json.getBytes(StandardCharsets.UTF_8).length);
+	}
 }
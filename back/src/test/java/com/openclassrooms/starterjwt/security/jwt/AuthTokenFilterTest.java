@@ -10,6 +10,7 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -18,6 +19,12 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.impl.DefaultClaims;
+
 @ExtendWith(MockitoExtension.class)
 class AuthTokenFilterTest {
 
@@ -27,6 +34,12 @@ class AuthTokenFilterTest {
 	@Mock
 	private JwtUtils jwtUtils;
 
+	@Mock
+	private UserDetailsServiceImpl userDetailsService;
+
+	@Mock
+	private TokenDenylist tokenDenylist;
+
 	@Mock
 	private HttpServletRequest request;
 
@@ -36,6 +49,10 @@ class AuthTokenFilterTest {
 	@Mock
 	private FilterChain filterChain;
 
+	@AfterEach
+	void tearDown() {
+		SecurityContextHolder.clearContext();
+	}
 
 	/**
 	 * Teste si une requête sans token passe sans authentification.
@@ -60,7 +77,7 @@ class AuthTokenFilterTest {
 		String jwt = "invalid-token";
 
 		when(request.getHeader("Authorization")).thenReturn("Bearer " + jwt);
-		when(jwtUtils.validateJwtToken(jwt)).thenReturn(false);
+		when(jwtUtils.verifyJwtToken(jwt)).thenReturn(JwtVerification.failed(JwtVerification.Failure.MALFORMED));
 
 		authTokenFilter.doFilterInternal(request, response, filterChain);
 
@@ -78,7 +95,7 @@ class AuthTokenFilterTest {
 		String jwt = "valid-token";
 
 		when(request.getHeader("Authorization")).thenReturn("Bearer " + jwt);
-		when(jwtUtils.validateJwtToken(jwt)).thenThrow(new RuntimeException("Unexpected error"));
+		when(jwtUtils.verifyJwtToken(jwt)).thenThrow(new RuntimeException("Unexpected error"));
 
 		authTokenFilter.doFilterInternal(request, response, filterChain);
 
@@ -87,4 +104,67 @@ class AuthTokenFilterTest {
 
 		verify(filterChain).doFilter(request, response);
 	}
+
+	/**
+	 * Teste qu'en mode sans état le principal est reconstruit depuis le token, sans requête en base.
+	 */
+	@Test
+	void doFilterInternal_ShouldAuthenticateFromClaims_WhenStatelessPrincipalEnabled() throws Exception {
+		String jwt = "valid-token";
+		Claims claims = new DefaultClaims().setSubject("yoga@studio.com");
+		UserDetailsImpl principal = UserDetailsImpl.builder().id(1L).username("yoga@studio.com").admin(false).build();
+
+		java.lang.reflect.Field statelessField = AuthTokenFilter.class.getDeclaredField("statelessPrincipal");
+		statelessField.setAccessible(true);
+		statelessField.set(authTokenFilter, true);
+
+		when(request.getHeader("Authorization")).thenReturn("Bearer " + jwt);
+		when(jwtUtils.verifyJwtToken(jwt)).thenReturn(JwtVerification.valid(claims));
+		when(jwtUtils.getUserDetailsFromClaims(claims)).thenReturn(principal);
+
+		authTokenFilter.doFilterInternal(request, response, filterChain);
+
+		assertEquals(principal, SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+		verifyNoInteractions(userDetailsService);
+		verify(filterChain).doFilter(request, response);
+	}
+
+	/**
+	 * Teste qu'en mode base de données le principal est chargé via le UserDetailsService.
+	 */
+	@Test
+	void doFilterInternal_ShouldLoadUserFromDatabase_WhenStatelessPrincipalDisabled() throws ServletException, IOException {
+		String jwt = "valid-token";
+		Claims claims = new DefaultClaims().setSubject("yoga@studio.com");
+		UserDetailsImpl principal = UserDetailsImpl.builder().id(1L).username("yoga@studio.com").admin(false).build();
+
+		when(request.getHeader("Authorization")).thenReturn("Bearer " + jwt);
+		when(jwtUtils.verifyJwtToken(jwt)).thenReturn(JwtVerification.valid(claims));
+		when(userDetailsService.loadUserByUsername("yoga@studio.com")).thenReturn(principal);
+
+		authTokenFilter.doFilterInternal(request, response, filterChain);
+
+		assertEquals(principal, SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+		verify(jwtUtils, never()).getUserDetailsFromClaims(any());
+		verify(filterChain).doFilter(request, response);
+	}
+
+	/**
+	 * Teste qu'un token révoqué n'authentifie plus l'utilisateur, même s'il est encore valide.
+	 */
+	@Test
+	void doFilterInternal_ShouldNotAuthenticate_WhenTokenIsRevoked() throws ServletException, IOException {
+		String jwt = "revoked-token";
+		Claims claims = new DefaultClaims().setSubject("yoga@studio.com").setId("revoked-jti");
+
+		when(request.getHeader("Authorization")).thenReturn("Bearer " + jwt);
+		when(jwtUtils.verifyJwtToken(jwt)).thenReturn(JwtVerification.valid(claims));
+		when(tokenDenylist.isRevoked("revoked-jti")).thenReturn(true);
+
+		authTokenFilter.doFilterInternal(request, response, filterChain);
+
+		assertNull(SecurityContextHolder.getContext().getAuthentication(), "Un token révoqué ne doit pas authentifier l'utilisateur");
+		verifyNoInteractions(userDetailsService);
+		verify(filterChain).doFilter(request, response);
+	}
 }
@@ -162,4 +162,106 @@ class JwtUtilsTest {
 		assertFalse(jwtUtils.validateJwtToken(unsupportedToken), "Un token non supporté ne doit pas être valide");
 	}
 
+	/**
+	 * Teste que la vérification d'un token valide retourne ses claims.
+	 */
+	@Test
+	void verifyJwtToken_ShouldReturnClaims_WhenTokenIsValid() {
+		String token = Jwts.builder()
+				.setSubject("testUser")
+				.setIssuedAt(new Date())
+				.setExpiration(new Date(System.currentTimeMillis() + jwtExpirationMs))
+				.signWith(SignatureAlgorithm.HS512, jwtSecret)
+				.compact();
+
+		JwtVerification verification = jwtUtils.verifyJwtToken(token);
+
+		assertTrue(verification.isValid(), "Le token valide doit être accepté");
+		assertEquals("testUser", verification.getClaims().getSubject());
+		assertNull(verification.getFailure());
+	}
+
+	/**
+	 * Teste que la vérification d'un token expiré indique la raison du refus.
+	 */
+	@Test
+	void verifyJwtToken_ShouldReturnExpired_WhenTokenIsExpired() {
+		String token = Jwts.builder()
+				.setSubject("testUser")
+				.setIssuedAt(new Date(System.currentTimeMillis() - 2000))
+				.setExpiration(new Date(System.currentTimeMillis() - 1000))
+				.signWith(SignatureAlgorithm.HS512, jwtSecret)
+				.compact();
+
+		JwtVerification verification = jwtUtils.verifyJwtToken(token);
+
+		assertFalse(verification.isValid());
+		assertEquals(JwtVerification.Failure.EXPIRED, verification.getFailure());
+	}
+
+	/**
+	 * Teste qu'un token mis en cache n'est plus accepté une fois expiré.
+	 */
+	@Test
+	void verifyJwtToken_ShouldNotServeCachedToken_AfterExpiration() throws Exception {
+		java.lang.reflect.Field cacheSizeField = JwtUtils.class.getDeclaredField("jwtCacheSize");
+		cacheSizeField.setAccessible(true);
+		cacheSizeField.set(jwtUtils, 10);
+
+		String token = Jwts.builder()
+				.setSubject("testUser")
+				.setIssuedAt(new Date())
+				// L'expiration est arrondie à la seconde : 1,5 s laisse au moins 0,5 s de validité
+				.setExpiration(new Date(System.currentTimeMillis() + 1500))
+				.signWith(SignatureAlgorithm.HS512, jwtSecret)
+				.compact();
+
+		assertTrue(jwtUtils.verifyJwtToken(token).isValid());
+		assertTrue(jwtUtils.verifyJwtToken(token).isValid(), "Le token doit être servi depuis le cache");
+
+		Thread.sleep(1600); // Attendre que le token expire
+
+		assertEquals(JwtVerification.Failure.EXPIRED, jwtUtils.verifyJwtToken(token).getFailure());
+	}
+
+	/**
+	 * Teste que le principal embarqué dans le token est reconstruit sans accès à la base.
+	 */
+	@Test
+	void getUserDetailsFromClaims_ShouldRebuildPrincipalFromToken() {
+		UserDetailsImpl principal = UserDetailsImpl.builder()
+				.id(42L)
+				.username("yoga@studio.com")
+				.firstName("Admin")
+				.lastName("Studio")
+				.admin(true)
+				.build();
+		when(authentication.getPrincipal()).thenReturn(principal);
+
+		String token = jwtUtils.generateJwtToken(authentication);
+		UserDetailsImpl rebuilt = jwtUtils.getUserDetailsFromClaims(jwtUtils.verifyJwtToken(token).getClaims());
+
+		assertNotNull(rebuilt);
+		assertEquals(42L, rebuilt.getId());
+		assertEquals("yoga@studio.com", rebuilt.getUsername());
+		assertEquals("Admin", rebuilt.getFirstName());
+		assertEquals("Studio", rebuilt.getLastName());
+		assertTrue(rebuilt.getAdmin());
+	}
+
+	/**
+	 * Teste qu'un token émis sans principal ne permet pas de reconstruire l'utilisateur.
+	 */
+	@Test
+	void getUserDetailsFromClaims_ShouldReturnNull_WhenTokenHasNoPrincipal() {
+		String token = Jwts.builder()
+				.setSubject("testUser")
+				.setIssuedAt(new Date())
+				.setExpiration(new Date(System.currentTimeMillis() + jwtExpirationMs))
+				.signWith(SignatureAlgorithm.HS512, jwtSecret)
+				.compact();
+
+		assertNull(jwtUtils.getUserDetailsFromClaims(jwtUtils.verifyJwtToken(token).getClaims()));
+	}
+
 }
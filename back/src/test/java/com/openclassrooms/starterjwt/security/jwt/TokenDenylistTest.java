@@ -0,0 +1,75 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.openclassrooms.starterjwt.models.RevokedToken;
+import com.openclassrooms.starterjwt.repository.RevokedTokenRepository;
+
+@ExtendWith(MockitoExtension.class)
+class TokenDenylistTest {
+
+	@Mock
+	private RevokedTokenRepository revokedTokenRepository;
+
+	private TokenDenylist tokenDenylist;
+
+	@BeforeEach
+	void setUp() {
+		tokenDenylist = new TokenDenylist(revokedTokenRepository, 1000);
+	}
+
+	/**
+	 * Teste qu'un token révoqué est reconnu et que la révocation est persistée.
+	 */
+	@Test
+	void revoke_ShouldDenyTokenAndPersistIt() {
+		Date expiresAt = new Date(System.currentTimeMillis() + 60000);
+
+		tokenDenylist.revoke("jti-1", expiresAt);
+
+		assertTrue(tokenDenylist.isRevoked("jti-1"));
+		assertFalse(tokenDenylist.isRevoked("jti-2"));
+		assertFalse(tokenDenylist.isRevoked(null));
+		verify(revokedTokenRepository).save(new RevokedToken("jti-1", expiresAt));
+	}
+
+	/**
+	 * Teste qu'une révocation expirée n'est plus prise en compte.
+	 */
+	@Test
+	void isRevoked_ShouldReturnFalse_WhenRevocationExpired() {
+		tokenDenylist.revoke("jti-1", new Date(System.currentTimeMillis() - 1000));
+
+		assertFalse(tokenDenylist.isRevoked("jti-1"));
+	}
+
+	/**
+	 * Teste que le nettoyage purge les entrées expirées et recharge celles encore actives en base.
+	 */
+	@Test
+	void sweep_ShouldKeepOnlyLiveRevocations() {
+		Date expiresAt = new Date(System.currentTimeMillis() + 60000);
+		tokenDenylist.revoke("expired-jti", expiresAt);
+
+		when(revokedTokenRepository.deleteExpired(any(Date.class))).thenReturn(1);
+		when(revokedTokenRepository.findByExpiresAtAfter(any(Date.class)))
+				.thenReturn(List.of(new RevokedToken("other-node-jti", expiresAt)));
+
+		tokenDenylist.sweep();
+
+		assertFalse(tokenDenylist.isRevoked("expired-jti"));
+		assertTrue(tokenDenylist.isRevoked("other-node-jti"));
+		assertEquals(1, tokenDenylist.size());
+	}
+}
@@ -0,0 +1,54 @@
+package com.openclassrooms.starterjwt.security.password;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+class BoundedPasswordEncoderTest {
+
+	private final ExecutorService callers = Executors.newFixedThreadPool(1);
+
+	private final PasswordHashingExecutor hashingExecutor = new PasswordHashingExecutor(1, 1, 5000, 3);
+
+	private final BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(new CalibratedBCryptPasswordEncoder(5), hashingExecutor);
+
+	@AfterEach
+	void tearDown() {
+		callers.shutdownNow();
+		hashingExecutor.shutdown();
+	}
+
+	/**
+	 * Teste qu'un hash d'un autre coût est recalculé tant que le pool est disponible.
+	 */
+	@Test
+	void upgradeEncoding_ShouldReturnTrue_WhenPoolIsIdle() {
+		String hash = new BCryptPasswordEncoder(4).encode("password");
+
+		assertTrue(encoder.upgradeEncoding(hash));
+	}
+
+	/**
+	 * Teste que le recalcul est reporté quand le pool est occupé, sans erreur pour l'utilisateur.
+	 */
+	@Test
+	void upgradeEncoding_ShouldReturnFalse_WhenPoolIsBusy() throws InterruptedException {
+		String hash = new BCryptPasswordEncoder(4).encode("password");
+		CountDownLatch release = new CountDownLatch(1);
+
+		callers.submit(() -> hashingExecutor.execute(() -> release.await(5, TimeUnit.SECONDS)));
+		while (hashingExecutor.hasIdleThread()) {
+			Thread.sleep(10);
+		}
+
+		assertFalse(encoder.upgradeEncoding(hash));
+		release.countDown();
+	}
+}
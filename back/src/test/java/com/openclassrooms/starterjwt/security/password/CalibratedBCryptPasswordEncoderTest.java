@@ -0,0 +1,67 @@
+package com.openclassrooms.starterjwt.security.password;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+class CalibratedBCryptPasswordEncoderTest {
+
+	private final CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(5);
+
+	/**
+	 * Teste qu'un hash produit avec un coût plus faible doit être recalculé.
+	 */
+	@Test
+	void upgradeEncoding_ShouldReturnTrue_WhenCostIsLower() {
+		String hash = new BCryptPasswordEncoder(4).encode("password");
+
+		assertTrue(encoder.upgradeEncoding(hash));
+	}
+
+	/**
+	 * Teste qu'un hash produit avec un coût plus élevé doit aussi être recalculé.
+	 */
+	@Test
+	void upgradeEncoding_ShouldReturnTrue_WhenCostIsHigher() {
+		String hash = new BCryptPasswordEncoder(6).encode("password");
+
+		assertTrue(encoder.upgradeEncoding(hash));
+	}
+
+	/**
+	 * Teste qu'un hash produit avec le coût configuré est conservé.
+	 */
+	@Test
+	void upgradeEncoding_ShouldReturnFalse_WhenCostMatches() {
+		String hash = encoder.encode("password");
+
+		assertFalse(encoder.upgradeEncoding(hash));
+		assertTrue(encoder.matches("password", hash));
+	}
+
+	/**
+	 * Teste qu'une valeur qui n'est pas un hash BCrypt n'est pas recalculée.
+	 */
+	@Test
+	void upgradeEncoding_ShouldReturnFalse_WhenHashIsNotBCrypt() {
+		assertFalse(encoder.upgradeEncoding("encoded_password"));
+		assertFalse(encoder.upgradeEncoding(null));
+	}
+
+	/**
+	 * Teste que la calibration ne descend jamais sous le coût minimal.
+	 */
+	@Test
+	void calibrate_ShouldNotGoBelowMinimum() {
+		assertEquals(4, BCryptCalibrator.calibrate(0, 4, 6));
+	}
+
+	/**
+	 * Teste que la calibration ne dépasse jamais le coût maximal.
+	 */
+	@Test
+	void calibrate_ShouldNotGoAboveMaximum() {
+		assertEquals(5, BCryptCalibrator.calibrate(60000, 4, 5));
+	}
+}
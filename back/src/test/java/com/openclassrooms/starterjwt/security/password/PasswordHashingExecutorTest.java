@@ -0,0 +1,66 @@
+package com.openclassrooms.starterjwt.security.password;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+
+class PasswordHashingExecutorTest {
+
+	private final ExecutorService callers = Executors.newFixedThreadPool(2);
+
+	private final PasswordHashingExecutor hashingExecutor = new PasswordHashingExecutor(1, 1, 5000, 3);
+
+	@AfterEach
+	void tearDown() {
+		callers.shutdownNow();
+		hashingExecutor.shutdown();
+	}
+
+	/**
+	 * Teste que le résultat de la tâche est renvoyé à l'appelant.
+	 */
+	@Test
+	void execute_ShouldReturnTaskResult() {
+		assertEquals("hash", hashingExecutor.execute(() -> "hash"));
+	}
+
+	/**
+	 * Teste qu'une file pleine renvoie immédiatement une erreur 503 avec un délai de nouvelle tentative.
+	 */
+	@Test
+	void execute_ShouldRejectImmediately_WhenQueueIsFull() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+
+		// Un thread occupé et une tâche en attente saturent le pool
+		callers.submit(() -> hashingExecutor.execute(() -> release.await(5, TimeUnit.SECONDS)));
+		callers.submit(() -> hashingExecutor.execute(() -> release.await(5, TimeUnit.SECONDS)));
+		while (hashingExecutor.getQueueSize() < 1) {
+			Thread.sleep(10);
+		}
+
+		ServiceUnavailableException exception = assertThrows(ServiceUnavailableException.class,
+				() -> hashingExecutor.execute(() -> "hash"));
+
+		assertEquals(3, exception.getRetryAfterSeconds());
+		assertEquals(1, hashingExecutor.getRejectedCount());
+		release.countDown();
+	}
+
+	/**
+	 * Teste que les exceptions de la tâche sont propagées telles quelles.
+	 */
+	@Test
+	void execute_ShouldPropagateTaskException() {
+		assertThrows(IllegalArgumentException.class, () -> hashingExecutor.execute(() -> {
+			throw new IllegalArgumentException("bad salt");
+		}));
+	}
+}
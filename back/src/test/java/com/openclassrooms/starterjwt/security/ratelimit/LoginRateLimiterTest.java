@@ -0,0 +1,106 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.starterjwt.exception.TooManyRequestsException;
+
+class LoginRateLimiterTest {
+
+	/**
+	 * Teste que les tentatives sont acceptées tant que le seau de l'email n'est pas vide.
+	 */
+	@Test
+	void check_ShouldAllowAttempts_UpToEmailCapacity() {
+		LoginRateLimiter limiter = new LoginRateLimiter(100, 1000, 3, 60000, 100);
+
+		for (int i = 0; i < 3; i++) {
+			assertDoesNotThrow(() -> limiter.check("10.0.0.1", "yoga@studio.com"));
+		}
+
+		TooManyRequestsException exception = assertThrows(TooManyRequestsException.class,
+				() -> limiter.check("10.0.0.2", "YOGA@studio.com"));
+		assertTrue(exception.getRetryAfterSeconds() >= 1);
+		assertEquals(1, limiter.getRejectedByEmail());
+		assertEquals(0, limiter.getRejectedByIp());
+	}
+
+	/**
+	 * Teste qu'une même adresse IP est limitée même en changeant d'email à chaque tentative.
+	 */
+	@Test
+	void check_ShouldLimitClientAddress_AcrossEmails() {
+		LoginRateLimiter limiter = new LoginRateLimiter(2, 60000, 100, 1000, 100);
+
+		limiter.check("10.0.0.1", "a@studio.com");
+		limiter.check("10.0.0.1", "b@studio.com");
+
+		assertThrows(TooManyRequestsException.class, () -> limiter.check("10.0.0.1", "c@studio.com"));
+		assertDoesNotThrow(() -> limiter.check("10.0.0.2", "c@studio.com"));
+		assertEquals(1, limiter.getRejectedByIp());
+	}
+
+	/**
+	 * Teste que les connexions réussies ne consomment pas les tentatives de l'email ni de l'adresse.
+	 */
+	@Test
+	void onSuccess_ShouldGiveAttemptsBack() {
+		LoginRateLimiter limiter = new LoginRateLimiter(2, 60000, 2, 60000, 100);
+
+		for (int i = 0; i < 10; i++) {
+			limiter.check("10.0.0.1", "yoga@studio.com");
+			limiter.onSuccess("10.0.0.1", "yoga@studio.com");
+		}
+
+		limiter.check("10.0.0.1", "yoga@studio.com");
+		limiter.check("10.0.0.1", "yoga@studio.com");
+		assertThrows(TooManyRequestsException.class, () -> limiter.check("10.0.0.1", "yoga@studio.com"));
+	}
+
+	/**
+	 * Teste que des remboursements sans tentative ne donnent pas plus d'essais que la capacité du seau.
+	 */
+	@Test
+	void onSuccess_ShouldNotGiveMoreThanCapacity() {
+		LoginRateLimiter limiter = new LoginRateLimiter(2, 60000, 2, 60000, 100);
+		limiter.check("10.0.0.1", "yoga@studio.com");
+
+		for (int i = 0; i < 10; i++) {
+			limiter.onSuccess("10.0.0.1", "yoga@studio.com");
+		}
+
+		limiter.check("10.0.0.1", "yoga@studio.com");
+		limiter.check("10.0.0.1", "yoga@studio.com");
+		assertThrows(TooManyRequestsException.class, () -> limiter.check("10.0.0.1", "yoga@studio.com"));
+	}
+
+	/**
+	 * Teste que le seau se remplit de nouveau après la période de recharge.
+	 */
+	@Test
+	void check_ShouldRefill_AfterRefillPeriod() throws InterruptedException {
+		LoginRateLimiter limiter = new LoginRateLimiter(100, 1000, 1, 50, 100);
+
+		limiter.check("10.0.0.1", "yoga@studio.com");
+		assertThrows(TooManyRequestsException.class, () -> limiter.check("10.0.0.1", "yoga@studio.com"));
+
+		Thread.sleep(100);
+
+		assertDoesNotThrow(() -> limiter.check("10.0.0.1", "yoga@studio.com"));
+	}
+
+	/**
+	 * Teste que le nombre de seaux suivis reste borné.
+	 */
+	@Test
+	void check_ShouldBoundTrackedKeys() {
+		LoginRateLimiter limiter = new LoginRateLimiter(100, 60000, 100, 60000, 8);
+
+		for (int i = 0; i < 50; i++) {
+			limiter.check("10.0.0." + i, "user" + i + "@studio.com");
+		}
+
+		assertTrue(limiter.size() <= 16);
+	}
+}
@@ -0,0 +1,83 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class UserDetailsCacheTest {
+
+	private final UserDetailsImpl userDetails = UserDetailsImpl.builder()
+			.id(1L)
+			.username("yoga@studio.com")
+			.build();
+
+	/**
+	 * Teste qu'un utilisateur mis en cache est retrouvé et compté comme un succès.
+	 */
+	@Test
+	void get_ShouldReturnCachedUser_AndCountHit() {
+		UserDetailsCache cache = new UserDetailsCache(10, 60000);
+
+		assertNull(cache.get("yoga@studio.com"));
+		cache.put("yoga@studio.com", userDetails, cache.stamp());
+
+		assertSame(userDetails, cache.get("yoga@studio.com"));
+		assertEquals(1, cache.size());
+		assertEquals(0.5, cache.hitRate());
+	}
+
+	/**
+	 * Teste qu'une entrée expirée n'est plus retournée.
+	 */
+	@Test
+	void get_ShouldReturnNull_WhenEntryExpired() throws InterruptedException {
+		UserDetailsCache cache = new UserDetailsCache(10, 50);
+		cache.put("yoga@studio.com", userDetails, cache.stamp());
+
+		Thread.sleep(100); // Attendre l'expiration de l'entrée
+
+		assertNull(cache.get("yoga@studio.com"));
+		assertEquals(0, cache.size());
+	}
+
+	/**
+	 * Teste que la suppression d'un utilisateur par son ID le retire du cache.
+	 */
+	@Test
+	void evictById_ShouldRemoveUser() {
+		UserDetailsCache cache = new UserDetailsCache(10, 60000);
+		cache.put("yoga@studio.com", userDetails, cache.stamp());
+
+		cache.evictById(1L);
+
+		assertNull(cache.get("yoga@studio.com"));
+	}
+
+	/**
+	 * Teste qu'un chargement commencé avant une éviction ne remet pas une entrée périmée en cache.
+	 */
+	@Test
+	void put_ShouldIgnoreEntry_WhenEvictionHappenedDuringLoad() {
+		UserDetailsCache cache = new UserDetailsCache(10, 60000);
+		long stamp = cache.stamp();
+
+		cache.evict("yoga@studio.com");
+		cache.put("yoga@studio.com", userDetails, stamp);
+
+		assertNull(cache.get("yoga@studio.com"));
+	}
+
+	/**
+	 * Teste que le cache ne dépasse pas sa taille maximale.
+	 */
+	@Test
+	void put_ShouldStayBounded() {
+		UserDetailsCache cache = new UserDetailsCache(4, 60000);
+
+		for (long i = 0; i < 20; i++) {
+			cache.put("user" + i + "@studio.com", UserDetailsImpl.builder().id(i).build(), cache.stamp());
+		}
+
+		assertTrue(cache.size() <= 4);
+	}
+}
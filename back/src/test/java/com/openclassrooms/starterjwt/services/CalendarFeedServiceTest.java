@@ -0,0 +1,210 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CalendarFeedServiceTest {
+
+	private static final LocalDateTime UPDATED_AT = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+	@Mock
+	private SessionRepository sessionRepository;
+
+	@Mock
+	private UserRepository userRepository;
+
+	private CalendarFeedService calendarFeedService;
+
+	@BeforeEach
+	void setUp() {
+		calendarFeedService = new CalendarFeedService(sessionRepository, userRepository, 10, 90);
+	}
+
+	/**
+	 * Teste que le flux contient un événement par session réservée, au format iCalendar.
+	 */
+	@Test
+	void getFeed_shouldRenderBookedSessions() {
+		CalendarEntry yoga = new CalendarEntry(1L, UPDATED_AT, "Yoga, doux; matin", new Date(0));
+		when(sessionRepository.findCalendarStamps(5L)).thenReturn(List.of(yoga));
+		when(sessionRepository.findCalendarEntries(List.of(1L))).thenReturn(List.of(yoga));
+
+		String body = new String(calendarFeedService.getFeed(5L).getBody(), StandardCharsets.UTF_8);
+
+		assertTrue(body.startsWith("BEGIN:VCALENDAR\r\n"));
+		assertTrue(body.endsWith("END:VCALENDAR\r\n"));
+		assertTrue(body.contains("UID:session-1@yoga-app\r\n"));
+		assertTrue(body.contains("DTSTART:19700101T000000Z\r\n"));
+		assertTrue(body.contains("DURATION:PT90M\r\n"));
+		assertTrue(body.contains("SUMMARY:Yoga\\, doux\\; matin\r\n"));
+	}
+
+	/**
+	 * Teste que le flux est servi depuis le cache tant que rien ne change.
+	 */
+	@Test
+	void getFeed_shouldBuildOnce() {
+		when(sessionRepository.findCalendarStamps(5L)).thenReturn(List.of());
+
+		CalendarFeedService.Feed first = calendarFeedService.getFeed(5L);
+		CalendarFeedService.Feed second = calendarFeedService.getFeed(5L);
+
+		assertSame(first, second);
+		verify(sessionRepository, times(1)).findCalendarStamps(5L);
+		verify(sessionRepository, never()).findCalendarEntries(anyCollection());
+	}
+
+	/**
+	 * Teste qu'une inscription invalide le flux de l'utilisateur concerné, et seulement le sien.
+	 */
+	@Test
+	void onSessionChanged_shouldEvictFeedsOfNamedUsers() {
+		when(sessionRepository.findCalendarStamps(anyLong())).thenReturn(List.of());
+		CalendarFeedService.Feed before = calendarFeedService.getFeed(5L);
+		CalendarFeedService.Feed other = calendarFeedService.getFeed(6L);
+
+		calendarFeedService.onSessionChanged(SessionChangedEvent.participants(1L, List.of(5L)));
+
+		assertNotSame(before, calendarFeedService.getFeed(5L));
+		assertSame(other, calendarFeedService.getFeed(6L));
+	}
+
+	/**
+	 * Teste qu'une modification de session ne fait recalculer que l'événement de cette session.
+	 */
+	@Test
+	void onSessionChanged_shouldOnlyRenderChangedSessions() {
+		CalendarEntry yoga = new CalendarEntry(1L, UPDATED_AT, "Yoga", new Date(0));
+		CalendarEntry pilates = new CalendarEntry(2L, UPDATED_AT, "Pilates", new Date(0));
+		CalendarEntry renamed = new CalendarEntry(2L, UPDATED_AT.plusMinutes(1), "Pilates avancé", new Date(0));
+		when(sessionRepository.findCalendarStamps(5L)).thenReturn(List.of(yoga, pilates), List.of(yoga, renamed));
+		when(sessionRepository.findCalendarEntries(List.of(1L, 2L))).thenReturn(List.of(yoga, pilates));
+		when(sessionRepository.findCalendarEntries(List.of(2L))).thenReturn(List.of(renamed));
+		CalendarFeedService.Feed before = calendarFeedService.getFeed(5L);
+
+		calendarFeedService.onSessionChanged(SessionChangedEvent.saved(new Session().setId(2L)));
+		CalendarFeedService.Feed after = calendarFeedService.getFeed(5L);
+
+		assertNotEquals(before.getEtag(), after.getEtag());
+		assertTrue(new String(after.getBody(), StandardCharsets.UTF_8).contains("SUMMARY:Pilates avancé\r\n"));
+		verify(sessionRepository).findCalendarEntries(List.of(2L));
+	}
+
+	/**
+	 * Teste qu'un jeton de flux émis donne accès au flux de son utilisateur, sans être stocké en clair.
+	 */
+	@Test
+	void getFeedByToken_shouldServeFeedOfTokenHolder() {
+		ArgumentCaptor<String> stored = ArgumentCaptor.forClass(String.class);
+		when(userRepository.updateCalendarToken(eq(5L), stored.capture())).thenReturn(1);
+		String token = calendarFeedService.issueToken(5L);
+		when(userRepository.findIdByCalendarToken(stored.getValue())).thenReturn(Optional.of(5L));
+		when(sessionRepository.findCalendarStamps(5L)).thenReturn(List.of());
+
+		assertNotEquals(token, stored.getValue());
+		assertSame(calendarFeedService.getFeed(5L), calendarFeedService.getFeedByToken(token));
+	}
+
+	/**
+	 * Teste un jeton de flux inconnu, par exemple révoqué.
+	 */
+	@Test
+	void getFeedByToken_shouldReturnNull_WhenTokenUnknown() {
+		when(userRepository.findIdByCalendarToken(anyString())).thenReturn(Optional.empty());
+
+		assertNull(calendarFeedService.getFeedByToken("revoked"));
+		assertNull(calendarFeedService.getFeedByToken(""));
+		verify(sessionRepository, never()).findCalendarStamps(anyLong());
+	}
+
+	/**
+	 * Teste que deux jetons émis successivement diffèrent.
+	 */
+	@Test
+	void issueToken_shouldIssueDifferentTokens() {
+		when(userRepository.updateCalendarToken(eq(5L), anyString())).thenReturn(1);
+
+		assertNotEquals(calendarFeedService.issueToken(5L), calendarFeedService.issueToken(5L));
+	}
+
+	/**
+	 * Teste que les lignes longues sont repliées à 75 octets sans couper un caractère multi-octets.
+	 */
+	@Test
+	void line_shouldFoldAt75Octets() {
+		StringBuilder out = new StringBuilder();
+
+		CalendarFeedService.line(out, "DESCRIPTION:" + "é".repeat(100));
+
+		for (String line : out.toString().split("\r\n")) {
+			assertTrue(line.getBytes(StandardCharsets.UTF_8).length <= 75);
+		}
+		assertEquals("DESCRIPTION:" + "é".repeat(100), out.toString().replace("\r\n ", "").replace("\r\n", ""));
+	}
+
+	private static final class CalendarEntry implements SessionRepository.CalendarEntry {
+		private final Long id;
+
+		private final LocalDateTime updatedAt;
+
+		private final String name;
+
+		private final Date date;
+
+		private CalendarEntry(Long id, LocalDateTime updatedAt, String name, Date date) {
+			this.id = id;
+			this.updatedAt = updatedAt;
+			this.name = name;
+			this.date = date;
+		}
+
+		@Override
+		public Long getId() {
+			return id;
+		}
+
+		@Override
+		public LocalDateTime getUpdatedAt() {
+			return updatedAt;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public Date getDate() {
+			return date;
+		}
+
+		@Override
+		public Integer getDuration() {
+			return null;
+		}
+
+		@Override
+		public String getDescription() {
+			return "Une séance";
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MemberScheduleIndexTest {
+
+	private static final long HOUR = 3600000L;
+
+	@Mock
+	private SessionRepository sessionRepository;
+
+	private MemberScheduleIndex memberScheduleIndex;
+
+	@BeforeEach
+	void setUp() {
+		memberScheduleIndex = new MemberScheduleIndex(sessionRepository, 60);
+		memberScheduleIndex.schedule(1L, new Date(0), 120);
+		memberScheduleIndex.schedule(2L, new Date(HOUR), null);
+		memberScheduleIndex.schedule(3L, new Date(2 * HOUR), null);
+	}
+
+	/**
+	 * Teste qu'une réservation chevauchant une session déjà réservée est refusée,
+	 * et qu'une session qui commence quand l'autre se termine est acceptée.
+	 */
+	@Test
+	void book_shouldRejectOverlappingSessions() {
+		when(sessionRepository.findUserSchedules(5L)).thenReturn(List.of());
+
+		assertTrue(memberScheduleIndex.book(5L, 1L).isEmpty());
+		assertEquals(Optional.of(1L), memberScheduleIndex.book(5L, 2L));
+		assertTrue(memberScheduleIndex.book(5L, 3L).isEmpty());
+		assertTrue(memberScheduleIndex.book(5L, 1L).isEmpty());
+		verify(sessionRepository, times(1)).findUserSchedules(5L);
+	}
+
+	/**
+	 * Teste qu'une annulation libère le créneau de l'utilisateur, et seulement le sien.
+	 */
+	@Test
+	void release_shouldFreeTheSlot() {
+		when(sessionRepository.findUserSchedules(anyLong())).thenReturn(List.of());
+		memberScheduleIndex.book(5L, 1L);
+		memberScheduleIndex.book(6L, 1L);
+
+		memberScheduleIndex.release(5L, 1L);
+
+		assertTrue(memberScheduleIndex.book(5L, 2L).isEmpty());
+		assertEquals(Optional.of(1L), memberScheduleIndex.book(6L, 2L));
+	}
+
+	/**
+	 * Teste qu'une session replanifiée déplace le créneau des utilisateurs qui l'ont réservée.
+	 */
+	@Test
+	void onSessionChanged_shouldMoveBookedSlots() {
+		when(sessionRepository.findUserSchedules(5L)).thenReturn(List.of());
+		memberScheduleIndex.book(5L, 1L);
+
+		memberScheduleIndex.onSessionChanged(SessionChangedEvent.saved(new Session().setId(1L).setDate(new Date(10 * HOUR))));
+
+		memberScheduleIndex.schedule(4L, new Date(10 * HOUR + HOUR / 2), null);
+		assertTrue(memberScheduleIndex.book(5L, 2L).isEmpty());
+		assertEquals(Optional.of(1L), memberScheduleIndex.book(5L, 4L));
+	}
+
+	/**
+	 * Teste qu'une réservation annulée par un rollback ne laisse aucun créneau
+	 * pour un utilisateur chargé par cette réservation.
+	 */
+	@Test
+	void book_shouldForgetTheMemberOnRollback() {
+		when(sessionRepository.findUserSchedules(5L)).thenReturn(List.of());
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			memberScheduleIndex.book(5L, 1L);
+			assertEquals(1, memberScheduleIndex.size());
+
+			TransactionSynchronizationManager.getSynchronizations()
+					.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+
+		assertEquals(0, memberScheduleIndex.size());
+	}
+}
@@ -0,0 +1,139 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests du flux d'événements avec de vrais clients HTTP, dont un qui ne lit jamais sa réponse.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "oc.app.sessionEvents.threads=1",
+        "oc.app.sessionEvents.queueCapacity=1000000",
+        "oc.app.sessionEvents.sendTimeoutMs=200",
+        "oc.app.sessionEvents.heartbeatMs=3600000"
+})
+@Tag("integration")
+@ActiveProfiles("test")
+public class SessionEventBroadcasterIT {
+
+    private static final int EVENTS = 200_000;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private SessionEventBroadcaster sessionEventBroadcaster;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @AfterEach
+    public void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    /**
+     * Teste qu'un client qui ne lit plus ne bloque ni la publication, ni le heartbeat, ni les autres abonnés.
+     * Son écriture bloquée est détectée par le heartbeat, qui le déconnecte et remplace son thread d'envoi.
+     */
+    @Test
+    public void heartbeat_ShouldDropSubscriberThatStoppedReading() throws Exception {
+        User user = userRepository.save(new User("reader@email.com", "Doe", "John", "password", false));
+        String token = token(user);
+        long dropped = sessionEventBroadcaster.getDroppedCount();
+
+        try (Socket stalled = new Socket()) {
+            stalled.setReceiveBufferSize(1024);
+            subscribe(stalled, token);
+            awaitSubscribers(1);
+
+            // Fills the socket buffers: the only sender thread ends up blocked writing to this client
+            assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+                for (int i = 0; i < EVENTS; i++) {
+                    sessionEventBroadcaster.onSessionChanged(SessionChangedEvent.deleted((long) i));
+                }
+            });
+
+            long deadline = System.currentTimeMillis() + 30000;
+            while (sessionEventBroadcaster.size() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(300);
+                assertTimeoutPreemptively(Duration.ofSeconds(5), () -> sessionEventBroadcaster.heartbeat());
+            }
+            assertEquals(0, sessionEventBroadcaster.size());
+            assertEquals(dropped + 1, sessionEventBroadcaster.getDroppedCount());
+            assertEquals(2, sessionEventBroadcaster.getSenderThreads());
+
+            try (Socket reader = new Socket()) {
+                reader.setSoTimeout(10000);
+                subscribe(reader, token);
+                awaitSubscribers(1);
+
+                sessionEventBroadcaster.onSessionChanged(SessionChangedEvent.deleted(-1L));
+
+                assertTrue(readUntil(reader.getInputStream(), "event: deleted"));
+            }
+        }
+    }
+
+    private String token(User user) {
+        UserDetailsImpl principal = UserDetailsImpl.builder()
+                .id(user.getId())
+                .username(user.getEmail())
+                .firstName(user.getFirstName())
+                .lastName(user.getLastName())
+                .admin(false)
+                .build();
+        return jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(principal, null, List.of()));
+    }
+
+    private void subscribe(Socket socket, String token) throws IOException {
+        socket.connect(new InetSocketAddress("localhost", port));
+        socket.getOutputStream().write(("GET /api/session/events HTTP/1.1\r\nHost: localhost\r\n"
+                + "Authorization: Bearer " + token + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        socket.getOutputStream().flush();
+    }
+
+    private void awaitSubscribers(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sessionEventBroadcaster.size() != count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(count, sessionEventBroadcaster.size());
+    }
+
+    private static boolean readUntil(InputStream in, String expected) throws IOException {
+        StringBuilder received = new StringBuilder();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            received.append(new String(buffer, 0, read, StandardCharsets.UTF_8));
+            if (received.indexOf(expected) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,169 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.annotations.IT;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@IT
+@ActiveProfiles("test")
+public class SessionParticipationIT {
+
+    private static final int CAPACITY = 10;
+
+    private static final int MEMBERS = 60;
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    public void tearDown() {
+        sessionRepository.deleteAll();
+        teacherRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    /**
+     * Teste que des inscriptions simultanées ne dépassent jamais la capacité de la session.
+     * Doit accepter exactement autant de participants que de places et refuser les autres.
+     */
+    @Test
+    public void participate_ShouldNeverOverbook_UnderConcurrentReservations() throws Exception {
+        Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
+        Session session = sessionRepository.save(new Session(null, "Popular Session", new Date(), 60, "A popular session", teacher, null, null, null, CAPACITY, 0));
+
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < MEMBERS; i++) {
+            userIds.add(userRepository.save(new User("member" + i + "@email.com", "Member", "Yoga", "password", false)).getId());
+        }
+
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        for (Long userId : userIds) {
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    sessionService.participate(session.getId(), userId);
+                    booked.incrementAndGet();
+                } catch (BadRequestException e) {
+                    refused.incrementAndGet();
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+
+        assertTrue(errors.isEmpty(), () -> "Unexpected errors: " + errors);
+        assertEquals(CAPACITY, booked.get());
+        assertEquals(MEMBERS - CAPACITY, refused.get());
+
+        Session reloaded = sessionRepository.findWithUsersById(session.getId()).orElseThrow();
+        assertEquals(CAPACITY, reloaded.getParticipantCount());
+        assertEquals(CAPACITY, reloaded.getUsers().size());
+    }
+
+    /**
+     * Teste qu'une désinscription libère une place réutilisable.
+     */
+    @Test
+    public void noLongerParticipate_ShouldReleaseSeat() {
+        Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
+        Session session = sessionRepository.save(new Session(null, "Small Session", new Date(), 60, "A small session", teacher, null, null, null, 1, 0));
+        User first = userRepository.save(new User("first@email.com", "First", "Yoga", "password", false));
+        User second = userRepository.save(new User("second@email.com", "Second", "Yoga", "password", false));
+
+        sessionService.participate(session.getId(), first.getId());
+        assertThrows(BadRequestException.class, () -> sessionService.participate(session.getId(), second.getId()));
+
+        sessionService.noLongerParticipate(session.getId(), first.getId());
+        sessionService.participate(session.getId(), second.getId());
+
+        assertEquals(1, sessionRepository.findById(session.getId()).orElseThrow().getParticipantCount());
+    }
+
+    /**
+     * Teste qu'une baisse de capacité attend une réservation en cours au lieu de lire un nombre de participants
+     * périmé. Doit refuser la nouvelle capacité et conserver la place réservée.
+     */
+    @Test
+    public void update_ShouldWaitForSeatBeingReserved() throws Exception {
+        Teacher teacher = teacherRepository.save(new Teacher(null, "Doe", "John", null, null));
+        Session session = sessionRepository.save(new Session(null, "Small Session", new Date(), 60, "A small session", teacher, null, null, null, 2, 0));
+        User first = userRepository.save(new User("first@email.com", "First", "Yoga", "password", false));
+        User second = userRepository.save(new User("second@email.com", "Second", "Yoga", "password", false));
+        sessionService.participate(session.getId(), first.getId());
+
+        CountDownLatch reserved = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<?> booking = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+            sessionService.participate(session.getId(), second.getId());
+            reserved.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(reserved.await(10, TimeUnit.SECONDS));
+
+        Session smaller = new Session(null, "Small Session", session.getDate(), 60, "A small session", teacher, null, null, null, 1, 0);
+        Future<?> update = executor.submit(() -> sessionService.update(session.getId(), smaller));
+        Thread.sleep(200);
+        release.countDown();
+
+        booking.get(10, TimeUnit.SECONDS);
+        ExecutionException refused = assertThrows(ExecutionException.class, () -> update.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(BadRequestException.class, refused.getCause());
+        executor.shutdown();
+
+        Session reloaded = sessionRepository.findById(session.getId()).orElseThrow();
+        assertEquals(2, reloaded.getCapacity());
+        assertEquals(2, reloaded.getParticipantCount());
+    }
+}
@@ -0,0 +1,97 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionResponseCacheTest {
+
+	private final ExecutorService callers = Executors.newFixedThreadPool(4);
+
+	private final SessionResponseCache cache = new SessionResponseCache(new ObjectMapper(), 10);
+
+	@AfterEach
+	void tearDown() {
+		callers.shutdownNow();
+	}
+
+	/**
+	 * Teste que la liste est sérialisée une seule fois puis servie depuis le cache.
+	 */
+	@Test
+	void getList_shouldLoadOnce() {
+		AtomicInteger loads = new AtomicInteger();
+
+		byte[] first = cache.getList(() -> List.of(loads.incrementAndGet()));
+		byte[] second = cache.getList(() -> List.of(loads.incrementAndGet()));
+
+		assertEquals("[1]", new String(first, StandardCharsets.UTF_8));
+		assertSame(first, second);
+		assertEquals(1, loads.get());
+		assertEquals(0.5, cache.hitRate());
+	}
+
+	/**
+	 * Teste que des lectures concurrentes d'une entrée absente ne déclenchent qu'un seul chargement.
+	 */
+	@Test
+	void getList_shouldLoadOnce_WhenMissedConcurrently() throws Exception {
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+
+		Future<byte[]> first = callers.submit(() -> cache.getList(() -> {
+			loads.incrementAndGet();
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return List.of("yoga");
+		}));
+		while (cache.size() < 1) {
+			Thread.sleep(10);
+		}
+		Future<byte[]> second = callers.submit(() -> cache.getList(() -> List.of(loads.incrementAndGet())));
+		release.countDown();
+
+		assertArrayEquals(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+		assertEquals(1, loads.get());
+	}
+
+	/**
+	 * Teste qu'une modification de session retire la liste et le détail concernés, mais pas les autres.
+	 */
+	@Test
+	void onSessionChanged_shouldEvictListAndSession() {
+		cache.getList(() -> List.of(1L, 2L));
+		cache.getDetail(1L, () -> "yoga");
+		cache.getDetail(2L, () -> "pilates");
+
+		cache.onSessionChanged(SessionChangedEvent.participants(1L, List.of(5L)));
+
+		assertEquals(1, cache.size());
+		assertEquals("\"pilates\"", new String(cache.getDetail(2L, () -> "other"), StandardCharsets.UTF_8));
+		assertEquals("\"updated\"", new String(cache.getDetail(1L, () -> "updated"), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Teste qu'une session introuvable n'est pas mise en cache.
+	 */
+	@Test
+	void getDetail_shouldNotCacheMissingSession() {
+		assertNull(cache.getDetail(1L, () -> null));
+
+		assertEquals(0, cache.size());
+	}
+}
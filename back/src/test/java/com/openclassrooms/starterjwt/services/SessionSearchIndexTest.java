@@ -0,0 +1,72 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class SessionSearchIndexTest {
+
+	@Mock
+	private SessionRepository sessionRepository;
+
+	@InjectMocks
+	private SessionSearchIndex sessionSearchIndex;
+
+	/**
+	 * Teste que le découpage ignore la casse, les accents et la ponctuation.
+	 */
+	@Test
+	void tokenize_shouldNormalizeWords() {
+		assertEquals(List.of("seance", "de", "yoga", "doux"), SessionSearchIndex.tokenize("Séance de YOGA, doux !"));
+	}
+
+	/**
+	 * Teste que tous les mots de la recherche doivent être présents, chacun comme préfixe.
+	 */
+	@Test
+	void search_shouldMatchEveryWordAsPrefix() {
+		sessionSearchIndex.index(1L, "Yoga Vinyasa", "Un cours dynamique");
+		sessionSearchIndex.index(2L, "Yoga doux", "Un cours relaxant");
+		sessionSearchIndex.index(3L, "Pilates", "Renforcement");
+
+		assertEquals(Set.of(1L, 2L), sessionSearchIndex.search("yog"));
+		assertEquals(Set.of(2L), sessionSearchIndex.search("yoga relax"));
+		assertEquals(Set.of(), sessionSearchIndex.search("yoga renforcement"));
+		assertNull(sessionSearchIndex.search("!"));
+	}
+
+	/**
+	 * Teste que la réindexation d'une session retire ses anciens mots.
+	 */
+	@Test
+	void index_shouldReplacePreviousWords() {
+		sessionSearchIndex.index(1L, "Yoga", "Un cours");
+
+		sessionSearchIndex.index(1L, "Pilates", "Un cours");
+
+		assertEquals(Set.of(), sessionSearchIndex.search("yoga"));
+		assertEquals(Set.of(1L), sessionSearchIndex.search("pilates"));
+	}
+
+	/**
+	 * Teste qu'une session supprimée n'est plus trouvée.
+	 */
+	@Test
+	void remove_shouldForgetSession() {
+		sessionSearchIndex.index(1L, "Yoga", "Un cours");
+
+		sessionSearchIndex.remove(1L);
+
+		assertEquals(Set.of(), sessionSearchIndex.search("yoga"));
+		assertEquals(0, sessionSearchIndex.size());
+	}
+}
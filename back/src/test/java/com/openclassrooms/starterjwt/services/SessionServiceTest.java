@@ -1,20 +1,31 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.dto.ParticipationResultDto;
+import com.openclassrooms.starterjwt.dto.ParticipationResultDto.Status;
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -28,6 +39,21 @@ class SessionServiceTest {
 	@Mock
 	private UserRepository userRepository;
 
+	@Mock
+	private TeacherRepository teacherRepository;
+
+	@Mock
+	private SessionSearchIndex sessionSearchIndex;
+
+	@Mock
+	private TeacherScheduleIndex teacherScheduleIndex;
+
+	@Mock
+	private MemberScheduleIndex memberScheduleIndex;
+
+	@Mock
+	private ApplicationEventPublisher eventPublisher;
+
 	@InjectMocks
 	private SessionService sessionService;
 
@@ -45,19 +71,94 @@ class SessionServiceTest {
 
 		assertNotNull(result);
 		verify(sessionRepository, times(1)).save(session); // Vérifie que la méthode 'save' est appelée une fois
+		verify(eventPublisher, times(1)).publishEvent(any(SessionChangedEvent.class));
+	}
+
+	/**
+	 * Teste que la méthode `create` refuse une session qui chevauche une autre session du professeur.
+	 * - Vérifie que le chevauchement signalé par l'index est confirmé en base avant le refus.
+	 */
+	@Test
+	void create_shouldThrowBadRequestExceptionIfTeacherIsAlreadyBooked() {
+		Teacher teacher = new Teacher();
+		teacher.setId(1L);
+		Session session = new Session().setDate(new Date(3600000L)).setDuration(60).setTeacher(teacher);
+		SessionRepository.Schedule booked = mock(SessionRepository.Schedule.class);
+		when(booked.getId()).thenReturn(2L);
+		when(booked.getDate()).thenReturn(new Date(1800000L));
+		when(booked.getDuration()).thenReturn(60);
+		when(teacherScheduleIndex.lengthOf(any())).thenReturn(3600000L);
+		when(teacherScheduleIndex.findOverlaps(1L, 3600000L, 7200000L, null)).thenReturn(List.of(2L));
+		when(sessionRepository.findTeacherSchedules(eq(1L), any(), any())).thenReturn(List.of(booked));
+
+		assertThrows(BadRequestException.class, () -> sessionService.create(session));
+		verify(teacherRepository).findForUpdateById(1L);
+		verify(sessionRepository, never()).save(any());
+	}
+
+	/**
+	 * Teste que la méthode `create` accepte la session quand le chevauchement signalé par l'index n'existe plus en base.
+	 * - Vérifie que l'index est corrigé avec le contenu de la base.
+	 */
+	@Test
+	void create_shouldRefreshIndexIfOverlapIsStale() {
+		Teacher teacher = new Teacher();
+		teacher.setId(1L);
+		Session session = new Session().setDate(new Date(3600000L)).setDuration(60).setTeacher(teacher);
+		when(teacherScheduleIndex.lengthOf(any())).thenReturn(3600000L);
+		when(teacherScheduleIndex.findOverlaps(1L, 3600000L, 7200000L, null)).thenReturn(List.of(2L));
+		when(sessionRepository.findTeacherSchedules(eq(1L), any(), any())).thenReturn(List.of());
+		when(sessionRepository.save(session)).thenReturn(session);
+
+		sessionService.create(session);
+
+		verify(teacherScheduleIndex).refresh(List.of(2L), List.of());
+		verify(sessionRepository).save(session);
 	}
 
 	/**
 	 * Teste que la méthode `delete` supprime une session par son ID.
-	 * - Vérifie que la méthode `deleteById` est appelée avec le bon ID.
+	 * - Vérifie que la suppression ensembliste est appelée avec le bon ID, sans charger la session.
 	 */
 	@Test
 	void delete_shouldDeleteSessionById() {
 		Long sessionId = 1L;
 
+		when(sessionRepository.deleteSession(sessionId)).thenReturn(1);
+
 		sessionService.delete(sessionId);
 
-		verify(sessionRepository, times(1)).deleteById(sessionId);
+		verify(sessionRepository, times(1)).deleteSession(sessionId);
+		verify(sessionRepository, never()).findById(any());
+		verify(eventPublisher).publishEvent(any(SessionChangedEvent.class));
+	}
+
+	/**
+	 * Teste que la méthode `delete` lève une exception NotFoundException si aucune session n'a été supprimée.
+	 */
+	@Test
+	void delete_shouldThrowNotFoundExceptionIfSessionNotFound() {
+		Long sessionId = 1L;
+
+		when(sessionRepository.deleteSession(sessionId)).thenReturn(0);
+
+		assertThrows(NotFoundException.class, () -> sessionService.delete(sessionId));
+		verifyNoInteractions(eventPublisher);
+	}
+
+	/**
+	 * Teste que la méthode `removeAllParticipations` publie un changement par session quittée.
+	 */
+	@Test
+	void removeAllParticipations_shouldPublishOneEventPerSession() {
+		Long userId = 2L;
+
+		when(sessionRepository.removeAllParticipations(userId)).thenReturn(List.of(1L, 3L));
+
+		sessionService.removeAllParticipations(userId);
+
+		verify(eventPublisher, times(2)).publishEvent(any(SessionChangedEvent.class));
+		verify(memberScheduleIndex).forget(userId);
 	}
 
 	/**
@@ -111,103 +212,178 @@ class SessionServiceTest {
 
 	/**
 	 * Teste que la méthode `update` met à jour une session existante.
-	 * - Simule la sauvegarde d'une session mise à jour.
+	 * - Vérifie que seuls les champs descriptifs sont copiés sur la session chargée.
 	 */
 	@Test
 	void update_shouldUpdateSession() {
 		Long sessionId = 1L;
+		Session existing = new Session();
+		existing.setId(sessionId);
+		existing.setName("Yoga");
+		existing.setParticipantCount(3);
 		Session session = new Session();
-		session.setId(sessionId);
-		when(sessionRepository.save(session)).thenReturn(session);
+		session.setName("Pilates");
+		when(sessionRepository.findForUpdateById(sessionId)).thenReturn(Optional.of(existing));
+		when(sessionRepository.save(existing)).thenReturn(existing);
 
 		Session result = sessionService.update(sessionId, session);
 
 		assertNotNull(result);
 		assertEquals(sessionId, result.getId());
-		verify(sessionRepository, times(1)).save(session);
+		assertEquals("Pilates", result.getName());
+		assertEquals(3, result.getParticipantCount());
+		verify(sessionRepository, times(1)).save(existing);
 	}
 
 	/**
-	 * Teste que la méthode `participate` ajoute un utilisateur à une session.
-	 * - Simule une session et un utilisateur valides.
-	 * - Vérifie que l'utilisateur est ajouté et que la session est sauvegardée.
+	 * Teste que la méthode `update` conserve la capacité existante quand elle n'est pas fournie.
 	 */
 	@Test
-	void participate_shouldAddUserToSession() {
+	void update_shouldKeepCapacityIfNotProvided() {
 		Long sessionId = 1L;
-		Long userId = 2L;
+		Session existing = new Session();
+		existing.setId(sessionId);
+		existing.setCapacity(10);
+		Session session = new Session();
+		session.setName("Pilates");
+		when(sessionRepository.findForUpdateById(sessionId)).thenReturn(Optional.of(existing));
+		when(sessionRepository.save(existing)).thenReturn(existing);
+
+		Session result = sessionService.update(sessionId, session);
+
+		assertEquals(10, result.getCapacity());
+	}
 
+	/**
+	 * Teste que la méthode `update` refuse une capacité inférieure au nombre de participants.
+	 */
+	@Test
+	void update_shouldThrowBadRequestExceptionIfCapacityIsTooLow() {
+		Long sessionId = 1L;
+		Session existing = new Session();
+		existing.setId(sessionId);
+		existing.setParticipantCount(3);
 		Session session = new Session();
-		session.setUsers(new ArrayList<>());
-		User user = new User();
-		user.setId(userId);
+		session.setCapacity(2);
+		when(sessionRepository.findForUpdateById(sessionId)).thenReturn(Optional.of(existing));
 
-		when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
-		when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-		when(sessionRepository.save(session)).thenReturn(session);
+		assertThrows(BadRequestException.class, () -> sessionService.update(sessionId, session));
+		verify(sessionRepository, never()).save(any());
+	}
+
+	/**
+	 * Teste que la méthode `participate` réserve une place puis insère une seule ligne de participation.
+	 * - Vérifie qu'aucune session ni aucun utilisateur n'est chargé.
+	 */
+	@Test
+	void participate_shouldReserveSeatAndInsertParticipation() {
+		Long sessionId = 1L;
+		Long userId = 2L;
+
+		when(sessionRepository.reserveSeat(sessionId)).thenReturn(1);
+		when(sessionRepository.addParticipant(sessionId, userId)).thenReturn(1);
 
 		sessionService.participate(sessionId, userId);
 
-		assertTrue(session.getUsers().contains(user));
-		verify(sessionRepository, times(1)).save(session);
+		verify(sessionRepository, times(1)).reserveSeat(sessionId);
+		verify(sessionRepository, times(1)).addParticipant(sessionId, userId);
+		verify(sessionRepository, never()).findById(any());
+		verify(sessionRepository, never()).save(any());
+		verifyNoInteractions(userRepository);
 	}
 
 	/**
-	 * Teste que la méthode `participate` lève une exception NotFoundException
-	 * si la session ou l'utilisateur n'existe pas.
+	 * Teste que la méthode `participate` lève une exception NotFoundException si la session n'existe pas.
 	 */
 	@Test
-	void participate_shouldThrowNotFoundExceptionIfSessionOrUserNotFound() {
+	void participate_shouldThrowNotFoundExceptionIfSessionNotFound() {
 		Long sessionId = 1L;
 		Long userId = 2L;
 
-		when(sessionRepository.findById(sessionId)).thenReturn(Optional.empty());
+		when(sessionRepository.reserveSeat(sessionId)).thenReturn(0);
+		when(sessionRepository.existsById(sessionId)).thenReturn(false);
 
 		assertThrows(NotFoundException.class, () -> sessionService.participate(sessionId, userId));
+		verify(sessionRepository, never()).addParticipant(any(), any());
 	}
 
 	/**
-	 * Teste que la méthode `participate` lève une exception BadRequestException
-	 * si l'utilisateur participe déjà à la session.
+	 * Teste que la méthode `participate` lève une exception BadRequestException si la session est complète.
 	 */
 	@Test
-	void participate_shouldThrowBadRequestExceptionIfUserAlreadyParticipates() {
+	void participate_shouldThrowBadRequestExceptionIfSessionIsFull() {
 		Long sessionId = 1L;
 		Long userId = 2L;
 
-		User user = new User();
-		user.setId(userId);
+		when(sessionRepository.reserveSeat(sessionId)).thenReturn(0);
+		when(sessionRepository.existsById(sessionId)).thenReturn(true);
 
-		Session session = new Session();
-		session.setUsers(List.of(user));
+		assertThrows(BadRequestException.class, () -> sessionService.participate(sessionId, userId));
+		verify(sessionRepository, never()).addParticipant(any(), any());
+	}
 
-		when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
-		when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+	/**
+	 * Teste que la méthode `participate` lève une exception NotFoundException si l'utilisateur n'existe pas.
+	 */
+	@Test
+	void participate_shouldThrowNotFoundExceptionIfUserNotFound() {
+		Long sessionId = 1L;
+		Long userId = 2L;
+
+		when(sessionRepository.reserveSeat(sessionId)).thenReturn(1);
+		when(sessionRepository.addParticipant(sessionId, userId)).thenThrow(new DataIntegrityViolationException("FK"));
+		when(userRepository.existsById(userId)).thenReturn(false);
+
+		assertThrows(NotFoundException.class, () -> sessionService.participate(sessionId, userId));
+	}
+
+	/**
+	 * Teste que la méthode `participate` lève une exception BadRequestException
+	 * si l'utilisateur participe déjà à la session (violation de la clé primaire).
+	 */
+	@Test
+	void participate_shouldThrowBadRequestExceptionIfUserAlreadyParticipates() {
+		Long sessionId = 1L;
+		Long userId = 2L;
+
+		when(sessionRepository.reserveSeat(sessionId)).thenReturn(1);
+		when(sessionRepository.addParticipant(sessionId, userId)).thenThrow(new DataIntegrityViolationException("PK"));
+		when(userRepository.existsById(userId)).thenReturn(true);
 
 		assertThrows(BadRequestException.class, () -> sessionService.participate(sessionId, userId));
 	}
 
 	/**
-	 * Teste que la méthode `noLongerParticipate` retire un utilisateur d'une session.
+	 * Teste que la méthode `participate` lève une exception BadRequestException
+	 * si l'utilisateur a déjà une session sur le même créneau, sans rien écrire.
 	 */
 	@Test
-	void noLongerParticipate_shouldRemoveUserFromSession() {
+	void participate_shouldThrowBadRequestExceptionIfUserHasOverlappingSession() {
 		Long sessionId = 1L;
 		Long userId = 2L;
 
-		User user = new User();
-		user.setId(userId);
+		when(memberScheduleIndex.book(userId, sessionId)).thenReturn(Optional.of(3L));
 
-		Session session = new Session();
-		session.setUsers(new ArrayList<>(List.of(user)));
+		assertThrows(BadRequestException.class, () -> sessionService.participate(sessionId, userId));
+		verify(sessionRepository, never()).reserveSeat(any());
+		verify(sessionRepository, never()).addParticipant(any(), any());
+	}
 
-		when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
-		when(sessionRepository.save(session)).thenReturn(session);
+	/**
+	 * Teste que la méthode `noLongerParticipate` supprime une seule ligne de participation et libère la place.
+	 */
+	@Test
+	void noLongerParticipate_shouldDeleteParticipationAndReleaseSeat() {
+		Long sessionId = 1L;
+		Long userId = 2L;
+
+		when(sessionRepository.removeParticipant(sessionId, userId)).thenReturn(1);
 
 		sessionService.noLongerParticipate(sessionId, userId);
 
-		assertFalse(session.getUsers().contains(user));
-		verify(sessionRepository, times(1)).save(session);
+		verify(sessionRepository, times(1)).removeParticipant(sessionId, userId);
+		verify(sessionRepository, times(1)).releaseSeat(sessionId);
+		verify(sessionRepository, never()).save(any());
 	}
 
 	/**
@@ -219,7 +395,8 @@ class SessionServiceTest {
 		Long sessionId = 1L;
 		Long userId = 2L;
 
-		when(sessionRepository.findById(sessionId)).thenReturn(Optional.empty());
+		when(sessionRepository.removeParticipant(sessionId, userId)).thenReturn(0);
+		when(sessionRepository.existsById(sessionId)).thenReturn(false);
 
 		assertThrows(NotFoundException.class, () -> sessionService.noLongerParticipate(sessionId, userId));
 	}
@@ -233,11 +410,104 @@ class SessionServiceTest {
 		Long sessionId = 1L;
 		Long userId = 2L;
 
+		when(sessionRepository.removeParticipant(sessionId, userId)).thenReturn(0);
+		when(sessionRepository.existsById(sessionId)).thenReturn(true);
+
+		assertThrows(BadRequestException.class, () -> sessionService.noLongerParticipate(sessionId, userId));
+		verify(sessionRepository, never()).releaseSeat(any());
+	}
+
+	/**
+	 * Teste que la méthode `participateAll` renvoie un statut par utilisateur et n'insère que les places disponibles.
+	 */
+	@Test
+	void participateAll_shouldEnrollWithinRemainingSeats() {
+		Long sessionId = 1L;
 		Session session = new Session();
-		session.setUsers(new ArrayList<>());
+		session.setId(sessionId);
+		session.setCapacity(3);
+		session.setParticipantCount(1);
+		User enrolled = new User();
+		enrolled.setId(2L);
+		User first = new User();
+		first.setId(3L);
+		User second = new User();
+		second.setId(4L);
+		User third = new User();
+		third.setId(5L);
+		List<Long> userIds = List.of(2L, 3L, 4L, 5L, 6L);
+
+		when(sessionRepository.findForUpdateById(sessionId)).thenReturn(Optional.of(session));
+		when(userRepository.findAllById(userIds)).thenReturn(List.of(enrolled, first, second, third));
+		when(sessionRepository.findParticipantIds(sessionId, userIds)).thenReturn(Set.of(2L));
+
+		List<ParticipationResultDto> results = sessionService.participateAll(sessionId, userIds);
+
+		assertEquals(List.of(Status.ALREADY_ENROLLED, Status.ENROLLED, Status.ENROLLED, Status.FULL, Status.NOT_FOUND),
+				results.stream().map(ParticipationResultDto::getStatus).collect(Collectors.toList()));
+		verify(sessionRepository, times(1)).addParticipants(sessionId, List.of(3L, 4L));
+		verify(sessionRepository, times(1)).addSeats(sessionId, 2);
+	}
 
-		when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+	/**
+	 * Teste que la méthode `participateInAll` réserve dans l'ordre des identifiants, écarte les sessions
+	 * qui se chevauchent et retire la réservation des sessions complètes.
+	 */
+	@Test
+	void participateInAll_shouldSkipOverlappingAndFullSessions() {
+		Long userId = 5L;
+		Session first = new Session();
+		first.setId(1L);
+		Session second = new Session();
+		second.setId(2L);
+		Session third = new Session();
+		third.setId(3L);
+		List<Long> sessionIds = List.of(3L, 2L, 1L, 4L);
+
+		when(userRepository.existsById(userId)).thenReturn(true);
+		when(sessionRepository.findAllById(sessionIds)).thenReturn(List.of(first, second, third));
+		when(sessionRepository.findParticipationSessionIds(userId, sessionIds)).thenReturn(Set.of());
+		when(memberScheduleIndex.book(userId, 1L)).thenReturn(Optional.empty());
+		when(memberScheduleIndex.book(userId, 2L)).thenReturn(Optional.of(1L));
+		when(memberScheduleIndex.book(userId, 3L)).thenReturn(Optional.empty());
+		when(sessionRepository.reserveSeats(List.of(1L, 3L))).thenReturn(new boolean[] {true, false});
+
+		List<ParticipationResultDto> results = sessionService.participateInAll(userId, sessionIds);
+
+		assertEquals(List.of(Status.FULL, Status.OVERLAPPING, Status.ENROLLED, Status.NOT_FOUND),
+				results.stream().map(ParticipationResultDto::getStatus).collect(Collectors.toList()));
+		InOrder inOrder = inOrder(memberScheduleIndex);
+		inOrder.verify(memberScheduleIndex).book(userId, 1L);
+		inOrder.verify(memberScheduleIndex).book(userId, 2L);
+		inOrder.verify(memberScheduleIndex).book(userId, 3L);
+		verify(memberScheduleIndex, times(1)).cancel(userId, 3L);
+		verify(sessionRepository, times(1)).addParticipations(userId, List.of(1L));
+	}
 
-		assertThrows(BadRequestException.class, () -> sessionService.noLongerParticipate(sessionId, userId));
+	/**
+	 * Teste que la méthode `search` ne fait aucune requête si aucun mot ne correspond.
+	 */
+	@Test
+	void search_shouldReturnEmptyListWithoutQueryIfNoWordMatches() {
+		when(sessionSearchIndex.search("pilates")).thenReturn(Set.of());
+
+		List<SessionSummaryDto> result = sessionService.search(null, null, null, "pilates", null, 10);
+
+		assertTrue(result.isEmpty());
+		verifyNoInteractions(sessionRepository);
+	}
+
+	/**
+	 * Teste que la méthode `search` filtre en base sur les identifiants trouvés par l'index.
+	 */
+	@Test
+	void search_shouldFilterByMatchingIds() {
+		Set<Long> matches = Set.of(1L, 2L);
+		when(sessionSearchIndex.search("yoga")).thenReturn(matches);
+		when(sessionRepository.search(null, null, 3L, matches, null, 10)).thenReturn(List.of());
+
+		sessionService.search(null, null, 3L, "yoga", null, 10);
+
+		verify(sessionRepository, times(1)).search(null, null, 3L, matches, null, 10);
 	}
 }
@@ -0,0 +1,30 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.Session;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionVersionsTest {
+
+	private final SessionVersions sessionVersions = new SessionVersions();
+
+	/**
+	 * Teste qu'une session supprimée est oubliée et que ses anciennes versions ne sont plus jamais renvoyées,
+	 * y compris pour une session qui n'avait jamais changé.
+	 */
+	@Test
+	void onSessionChanged_shouldForgetDeletedSession() {
+		String untouched = sessionVersions.version(2L);
+		sessionVersions.onSessionChanged(SessionChangedEvent.saved(new Session().setId(1L)));
+		String changed = sessionVersions.version(1L);
+		assertEquals(1, sessionVersions.size());
+
+		sessionVersions.onSessionChanged(SessionChangedEvent.deleted(1L));
+		sessionVersions.onSessionChanged(SessionChangedEvent.deleted(2L));
+
+		assertEquals(0, sessionVersions.size());
+		assertNotEquals(changed, sessionVersions.version(1L));
+		assertNotEquals(untouched, sessionVersions.version(2L));
+	}
+}
@@ -0,0 +1,86 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class TeacherScheduleIndexTest {
+
+	private static final long HOUR = 3600000L;
+
+	@Mock
+	private SessionRepository sessionRepository;
+
+	private TeacherScheduleIndex teacherScheduleIndex;
+
+	@BeforeEach
+	void setUp() {
+		teacherScheduleIndex = new TeacherScheduleIndex(sessionRepository, 60);
+	}
+
+	/**
+	 * Teste que seules les sessions du même professeur qui chevauchent la plage sont trouvées.
+	 * Une session qui se termine quand la plage commence ne la chevauche pas.
+	 */
+	@Test
+	void findOverlaps_shouldFindOverlappingSessionsOfTheTeacher() {
+		teacherScheduleIndex.put(1L, 10L, new Date(0), 60);
+		teacherScheduleIndex.put(2L, 10L, new Date(2 * HOUR), 180);
+		teacherScheduleIndex.put(3L, 20L, new Date(HOUR), 60);
+
+		assertEquals(List.of(), teacherScheduleIndex.findOverlaps(10L, HOUR, 2 * HOUR, null));
+		assertEquals(List.of(1L), teacherScheduleIndex.findOverlaps(10L, HOUR / 2, 2 * HOUR, null));
+		assertEquals(List.of(2L), teacherScheduleIndex.findOverlaps(10L, 4 * HOUR, 5 * HOUR, null));
+		assertEquals(List.of(), teacherScheduleIndex.findOverlaps(10L, 4 * HOUR, 5 * HOUR, 2L));
+	}
+
+	/**
+	 * Teste qu'une session replanifiée ou supprimée libère son ancien créneau.
+	 */
+	@Test
+	void put_shouldMoveSessionAndRemoveShouldFreeIt() {
+		teacherScheduleIndex.put(1L, 10L, new Date(0), null);
+		teacherScheduleIndex.put(1L, 20L, new Date(0), null);
+
+		assertEquals(List.of(), teacherScheduleIndex.findOverlaps(10L, 0, HOUR, null));
+		assertEquals(List.of(1L), teacherScheduleIndex.findOverlaps(20L, 0, HOUR, null));
+
+		teacherScheduleIndex.remove(1L);
+
+		assertEquals(List.of(), teacherScheduleIndex.findOverlaps(20L, 0, HOUR, null));
+		assertEquals(0, teacherScheduleIndex.size());
+	}
+
+	/**
+	 * Teste qu'une session replanifiée dans une transaction annulée retrouve son ancien créneau.
+	 */
+	@Test
+	void schedule_shouldRestorePreviousSlotOnRollback() {
+		teacherScheduleIndex.put(1L, 10L, new Date(0), null);
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			teacherScheduleIndex.schedule(1L, 20L, new Date(2 * HOUR), null);
+			assertEquals(List.of(1L), teacherScheduleIndex.findOverlaps(20L, 2 * HOUR, 3 * HOUR, null));
+
+			TransactionSynchronizationManager.getSynchronizations()
+					.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+
+		assertEquals(List.of(), teacherScheduleIndex.findOverlaps(20L, 2 * HOUR, 3 * HOUR, null));
+		assertEquals(List.of(1L), teacherScheduleIndex.findOverlaps(10L, 0, HOUR, null));
+		assertEquals(1, teacherScheduleIndex.size());
+	}
+}
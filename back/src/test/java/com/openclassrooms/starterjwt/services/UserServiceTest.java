@@ -1,12 +1,17 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.Optional;
 
@@ -20,21 +25,68 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
+    @Mock
+    private SessionService sessionService;
+
     @InjectMocks
     private UserService userService;
 
     /**
      * Teste que la méthode `delete` appelle correctement la suppression d'un utilisateur par son ID.
      * - Un ID utilisateur est défini (userId = 1L).
-     * - Vérifie que la méthode `deleteById` du repository est appelée une fois avec le bon ID.
+     * - Vérifie que ses participations sont retirées avant la suppression de l'utilisateur.
+     * - Vérifie que l'utilisateur est retiré du cache d'authentification.
      */
     @Test
     void delete_shouldDeleteUserById() {
         Long userId = 1L;
 
+        when(userRepository.deleteUser(userId)).thenReturn(1);
+
         userService.delete(userId);
 
-        verify(userRepository, times(1)).deleteById(userId);
+        InOrder inOrder = inOrder(sessionService, userRepository);
+        inOrder.verify(sessionService).removeAllParticipations(userId);
+        inOrder.verify(userRepository).deleteUser(userId);
+        verify(userRepository, never()).findById(any());
+        verify(userDetailsCache, times(1)).evictById(userId);
+    }
+
+    /**
+     * Teste que l'utilisateur n'est retiré du cache d'authentification qu'une fois la transaction validée.
+     */
+    @Test
+    void delete_shouldEvictUserAfterCommit() {
+        Long userId = 1L;
+        when(userRepository.deleteUser(userId)).thenReturn(1);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            userService.delete(userId);
+            verify(userDetailsCache, never()).evictById(any());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(userDetailsCache, times(1)).evictById(userId);
+    }
+
+    /**
+     * Teste que la méthode `delete` lève une exception NotFoundException si l'utilisateur n'existe pas.
+     */
+    @Test
+    void delete_shouldThrowNotFoundExceptionIfUserNotFound() {
+        Long userId = 1L;
+
+        when(userRepository.deleteUser(userId)).thenReturn(0);
+
+        assertThrows(NotFoundException.class, () -> userService.delete(userId));
+        verifyNoInteractions(userDetailsCache);
     }
 
     /**
@@ -11,7 +11,10 @@ CREATE TABLE `SESSIONS` (
   `name` VARCHAR(50),
   `description` VARCHAR(2000),
   `date` TIMESTAMP,
+  `duration` INT,
   `teacher_id` int,
+  `capacity` INT,
+  `participant_count` INT NOT NULL DEFAULT 0,
   `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
   `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
 );
@@ -23,19 +26,35 @@ CREATE TABLE `USERS` (
   `admin` BOOLEAN NOT NULL DEFAULT false,
   `email` VARCHAR(255),
   `password` VARCHAR(255),
+  `calendar_token` VARCHAR(64) UNIQUE,
   `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
   `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
 );
 
 CREATE TABLE `PARTICIPATE` (
   `user_id` INT, 
-  `session_id` INT
+  `session_id` INT,
+  PRIMARY KEY (`session_id`, `user_id`)
 );
 
+CREATE TABLE `REVOKED_TOKENS` (
+  `jti` VARCHAR(36) PRIMARY KEY,
+  `expires_at` DATETIME NOT NULL
+);
+
+CREATE INDEX `idx_sessions_date_id` ON `SESSIONS` (`date`, `id`);
+CREATE INDEX `idx_sessions_teacher_date` ON `SESSIONS` (`teacher_id`, `date`);
+CREATE INDEX `idx_participate_user_session` ON `PARTICIPATE` (`user_id`, `session_id`);
+
+CREATE INDEX `idx_revoked_tokens_expires_at` ON `REVOKED_TOKENS` (`expires_at`);
+
 ALTER TABLE `SESSIONS` ADD FOREIGN KEY (`teacher_id`) REFERENCES `TEACHERS` (`id`);
 ALTER TABLE `PARTICIPATE` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`);
 ALTER TABLE `PARTICIPATE` ADD FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`);
 
+-- Databases created before `participant_count` existed get the column with 0: count their participations
+UPDATE `SESSIONS` SET `participant_count` = (SELECT COUNT(*) FROM `PARTICIPATE` WHERE `PARTICIPATE`.`session_id` = `SESSIONS`.`id`);
+
 INSERT INTO TEACHERS (first_name, last_name)
 VALUES ('Margot', 'DELAHAYE'),
        ('Hélène', 'THIERCELIN');